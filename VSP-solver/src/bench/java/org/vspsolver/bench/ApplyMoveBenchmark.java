@@ -0,0 +1,89 @@
+package org.vspsolver.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.vspsolver.lsvsp.LocalSearchState;
+import org.vspsolver.util.InstanceCache;
+import org.vspsolver.util.LoadedInstance;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+// moves/s of applyMoveFromC over random legal moves; allocation per move comes from the gc profiler
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplyMoveBenchmark {
+    private static final long SEED = 7;
+
+    // a cached instance path, or empty for a random graph with 20000 vertices and 400000 edges
+    @Param("")
+    public String instance;
+
+    private LoadedInstance loaded;
+    private LocalSearchState state;
+    private Random random;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void loadInstance() throws IOException {
+        loaded = instance.isEmpty()
+                ? BenchmarkInstances.randomGraph(20_000, 400_000, 42)
+                : InstanceCache.load(Paths.get(instance));
+        state = new LocalSearchState(loaded.graph, loaded.maxShoreSize, loaded.neighbourData, true);
+    }
+
+    @Setup(Level.Iteration)
+    public void loadSeparator() {
+        random = new Random(SEED + iteration++);
+        state.loadFrom(BenchmarkInstances.randomSeparator(loaded, loaded.neighbourData, random));
+    }
+
+    // one applied move per invocation, skipping illegal draws
+    @Benchmark
+    public int applyMoveFromC() {
+        while (true) {
+            int v = random.nextInt(state.n);
+            byte to = random.nextBoolean() ? (byte) 0 : (byte) 1;
+            if (state.isLegalMoveFromC(v, to)) {
+                return state.applyMoveFromC(v, to, iteration, random);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        forkWithContextClasspath();
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(ApplyMoveBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class);
+        if (args.length > 0) {
+            options.param("instance", args);
+        }
+        new Runner(options.build()).run();
+    }
+
+    // exec:java loads the project through a class loader of its own, which the forked JVM would not see
+    private static void forkWithContextClasspath() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (!(loader instanceof URLClassLoader)) {
+            return;
+        }
+        StringJoiner classpath = new StringJoiner(File.pathSeparator);
+        for (URL url : ((URLClassLoader) loader).getURLs()) {
+            classpath.add(url.getPath());
+        }
+        System.setProperty("java.class.path", classpath.toString());
+    }
+}
@@ -0,0 +1,144 @@
+package org.vspsolver.bench;
+
+import org.graph4j.vsp.VertexSeparator;
+import org.vspsolver.util.*;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.*;
+
+public final class BenchmarkInstances {
+    private BenchmarkInstances() {}
+
+    public static Map<String, LoadedInstance> fromArgs(String[] args) throws IOException {
+        Map<String, LoadedInstance> instances = new LinkedHashMap<>();
+        for (String arg : args) {
+            instances.put(Paths.get(arg).getFileName().toString(), InstanceCache.load(Paths.get(arg)));
+        }
+        if (instances.isEmpty()) {
+            instances.put("scrambled-grid-300x300", scrambledGrid(300, 300, 42));
+        }
+        return instances;
+    }
+
+    public static LoadedInstance scrambledGrid(int rows, int cols, long seed) {
+        int n = rows * cols;
+        int[] label = new int[n];
+        for (int i = 0; i < n; i++) {
+            label[i] = i;
+        }
+        Utils.shuffle(label, new Random(seed));
+
+        int m = rows * (cols - 1) + (rows - 1) * cols;
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int e = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int v = r * cols + c;
+                if (c + 1 < cols) {
+                    sources[e] = label[v];
+                    targets[e++] = label[v + 1];
+                }
+                if (r + 1 < rows) {
+                    sources[e] = label[v];
+                    targets[e++] = label[v + cols];
+                }
+            }
+        }
+
+        int[] vertices = new int[n];
+        for (int i = 0; i < n; i++) {
+            vertices[i] = i;
+        }
+        ParsedInstance parsed = new ParsedInstance((int) Math.ceil(0.6 * n), vertices, sources, targets);
+        GraphNeighbourData neighbourData = GraphNeighbourUtil.build(parsed);
+        return new LoadedInstance(GraphNeighbourUtil.toGraph(neighbourData), parsed.maxShoreSize, neighbourData);
+    }
+
+    public static LoadedInstance randomGraph(int n, int m, long seed) {
+        Random random = new Random(seed);
+        Set<Long> seen = new HashSet<>();
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int e = 0;
+        while (e < m) {
+            int u = random.nextInt(n);
+            int v = random.nextInt(n);
+            if (u == v || !seen.add((long) Math.min(u, v) * n + Math.max(u, v))) {
+                continue;
+            }
+            sources[e] = u;
+            targets[e++] = v;
+        }
+
+        int[] vertices = new int[n];
+        for (int i = 0; i < n; i++) {
+            vertices[i] = i;
+        }
+        ParsedInstance parsed = new ParsedInstance((int) Math.ceil(0.6 * n), vertices, sources, targets);
+        GraphNeighbourData neighbourData = GraphNeighbourUtil.build(parsed);
+        return new LoadedInstance(GraphNeighbourUtil.toGraph(neighbourData), parsed.maxShoreSize, neighbourData);
+    }
+
+    public static VertexSeparator randomSeparator(LoadedInstance instance, GraphNeighbourData neighbourData,
+                                                  Random random) {
+        int n = neighbourData.size();
+        byte[] part = new byte[n];
+        for (int v = 0; v < n; v++) {
+            int r = random.nextInt(4);
+            part[v] = (byte) (r < 2 ? r : 2);
+        }
+        for (int v = 0; v < n; v++) {
+            if (part[v] != 0) {
+                continue;
+            }
+            for (int p = neighbourData.offsets[v]; p < neighbourData.offsets[v + 1]; p++) {
+                if (part[neighbourData.targets[p]] == 1) {
+                    part[v] = 2;
+                    break;
+                }
+            }
+        }
+
+        VertexSeparator sep = new VertexSeparator(instance.graph, instance.maxShoreSize);
+        for (int v = 0; v < n; v++) {
+            if (part[v] == 0) {
+                sep.leftShore().add(neighbourData.ids[v]);
+            } else if (part[v] == 1) {
+                sep.rightShore().add(neighbourData.ids[v]);
+            } else {
+                sep.separator().add(neighbourData.ids[v]);
+            }
+        }
+        return sep;
+    }
+
+    // bytes allocated by the calling thread so far, 0 where the JVM does not track it
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    public static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    public static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+}
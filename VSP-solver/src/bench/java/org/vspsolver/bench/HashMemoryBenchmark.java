@@ -0,0 +1,48 @@
+package org.vspsolver.bench;
+
+import org.vspsolver.lsvsp.HashMemory;
+
+import java.util.SplittableRandom;
+
+public final class HashMemoryBenchmark {
+    private static final long SEED = 7;
+    private static final int MAXHS = 100_000;
+    private static final int[] MAXSLO = {500, 5_000, 50_000};
+    private static final int ROUNDS = 5;
+    private static final int TOUCHES = 10_000_000;
+
+    public static void main(String[] args) {
+        for (int maxSlo : MAXSLO) {
+            // a stream over a pool twice the memory size, so about half of the touches revisit a live entry
+            SplittableRandom random = new SplittableRandom(SEED);
+            int poolSize = 2 * maxSlo;
+            long[] poolKeys = new long[poolSize];
+            long[] poolFingerprints = new long[poolSize];
+            for (int i = 0; i < poolSize; i++) {
+                poolKeys[i] = random.nextLong();
+                poolFingerprints[i] = random.nextLong();
+            }
+            int[] stream = new int[TOUCHES];
+            for (int i = 0; i < TOUCHES; i++) {
+                stream[i] = random.nextInt(poolSize);
+            }
+
+            HashMemory memory = new HashMemory(MAXHS, maxSlo);
+            double best = 0;
+            long hits = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                memory.clear();
+                hits = 0;
+                long t0 = System.nanoTime();
+                for (int i = 0; i < TOUCHES; i++) {
+                    int k = stream[i];
+                    if (memory.touch(poolKeys[k], poolFingerprints[k], i) >= 0) {
+                        hits++;
+                    }
+                }
+                best = Math.max(best, TOUCHES / ((System.nanoTime() - t0) / 1e9));
+            }
+            System.out.printf("maxSLO=%d touches/s=%.0f hitRate=%.2f%n", maxSlo, best, hits / (double) TOUCHES);
+        }
+    }
+}
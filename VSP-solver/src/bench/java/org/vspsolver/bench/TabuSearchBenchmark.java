@@ -0,0 +1,81 @@
+package org.vspsolver.bench;
+
+import org.vspsolver.prvsp.IteratedTabuSearch;
+import org.vspsolver.prvsp.PrVspSolution;
+import org.vspsolver.prvsp.PrVspSolutionUtil;
+import org.vspsolver.prvsp.TabuSearch;
+import org.vspsolver.util.LoadedInstance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public final class TabuSearchBenchmark {
+    private static final long SEED = 11;
+    private static final int WARMUP_ROUNDS = 1;
+    private static final int ROUNDS = 3;
+    private static final int STARTS = 5;
+
+    public static void main(String[] args) throws IOException {
+        // the default grid of fromArgs is too large for repeated tabu searches from random starts
+        Map<String, LoadedInstance> instances = new LinkedHashMap<>();
+        if (args.length == 0) {
+            instances.put("random-3000-12000", BenchmarkInstances.randomGraph(3_000, 12_000, 42));
+        } else {
+            instances.putAll(BenchmarkInstances.fromArgs(args));
+        }
+
+        for (Map.Entry<String, LoadedInstance> entry : instances.entrySet()) {
+            LoadedInstance instance = entry.getValue();
+            System.out.println(entry.getKey() + " | n=" + instance.neighbourData.size()
+                    + " | m=" + instance.neighbourData.numEdges());
+
+            for (boolean iterated : new boolean[] {false, true}) {
+                for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                    measure(instance, iterated, round);
+                }
+                double[] best = null;
+                for (int round = 0; round < ROUNDS; round++) {
+                    double[] result = measure(instance, iterated, WARMUP_ROUNDS + round);
+                    if (best == null || result[0] < best[0]) {
+                        best = result;
+                    }
+                }
+                System.out.printf("  %s ms/improve=%.2f KB/improve=%.1f gc=%.0fms gcCount=%.0f%n",
+                        iterated ? "IteratedTabuSearch" : "TabuSearch", best[0], best[1], best[2], best[3]);
+            }
+        }
+    }
+
+    // returns {ms per improve call, KB allocated per call, GC ms, GC count} over STARTS random starting solutions
+    private static double[] measure(LoadedInstance instance, boolean iterated, int round) {
+        Random random = new Random(SEED + round);
+        List<PrVspSolution> starts = new ArrayList<>(STARTS);
+        for (int i = 0; i < STARTS; i++) {
+            starts.add(PrVspSolutionUtil.randomInitial(instance.neighbourData, instance.maxShoreSize, random));
+        }
+        TabuSearch tabuSearch = new TabuSearch(instance.neighbourData, instance.maxShoreSize, random);
+        IteratedTabuSearch iteratedTabuSearch = new IteratedTabuSearch(instance.neighbourData,
+                instance.maxShoreSize, random);
+
+        long gcTime0 = BenchmarkInstances.gcTime();
+        long gcCount0 = BenchmarkInstances.gcCount();
+        long bytes0 = BenchmarkInstances.allocatedBytes();
+        long t0 = System.nanoTime();
+        long sink = 0;
+        for (PrVspSolution start : starts) {
+            PrVspSolution result = iterated ? iteratedTabuSearch.improve(start) : tabuSearch.improve(start);
+            sink += result.objective();
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+        long bytes = BenchmarkInstances.allocatedBytes() - bytes0;
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return new double[] {ms / STARTS, bytes / 1024.0 / STARTS,
+                BenchmarkInstances.gcTime() - gcTime0, BenchmarkInstances.gcCount() - gcCount0};
+    }
+}
@@ -0,0 +1,78 @@
+package org.vspsolver.bench;
+
+import org.vspsolver.lsvsp.LocalSearchState;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.LoadedInstance;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+public final class VertexOrderingBenchmark {
+    private static final long SEED = 7;
+    private static final int SWEEPS = 50;
+    private static final int MOVE_ATTEMPTS = 2_000_000;
+
+    public static void main(String[] args) throws IOException {
+        for (Map.Entry<String, LoadedInstance> entry : BenchmarkInstances.fromArgs(args).entrySet()) {
+            LoadedInstance instance = entry.getValue();
+
+            long t0 = System.nanoTime();
+            GraphNeighbourData reordered = GraphNeighbourUtil.reorderRcm(instance.neighbourData);
+            long reorderMs = (System.nanoTime() - t0) / 1_000_000L;
+
+            System.out.println(entry.getKey() + " | n=" + instance.neighbourData.size()
+                    + " | m=" + instance.neighbourData.numEdges() + " | rcm=" + reorderMs + "ms");
+            report("input", instance, instance.neighbourData);
+            report("rcm", instance, reordered);
+        }
+    }
+
+    private static void report(String label, LoadedInstance instance, GraphNeighbourData neighbourData) {
+        LocalSearchState state = new LocalSearchState(instance.graph, instance.maxShoreSize, neighbourData, false);
+        state.loadFrom(BenchmarkInstances.randomSeparator(instance, neighbourData, new Random(SEED)));
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < SWEEPS; i++) {
+            state.recomputeNeighborCounts();
+        }
+        double sweepMs = (System.nanoTime() - t0) / 1e6 / SWEEPS;
+
+        Random random = new Random(SEED);
+        int applied = 0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < MOVE_ATTEMPTS; i++) {
+            int v = random.nextInt(state.n);
+            byte to = random.nextBoolean() ? (byte) 0 : (byte) 1;
+            if (state.isLegalMoveFromC(v, to)) {
+                state.applyMoveFromC(v, to, i, random);
+                applied++;
+            }
+        }
+        double movesPerSec = applied / ((System.nanoTime() - t0) / 1e9);
+
+        System.out.printf("  %-6s bandwidth=%d avgSpan=%.1f sweep=%.2fms moves/s=%.0f%n",
+                label, bandwidth(neighbourData), averageSpan(neighbourData), sweepMs, movesPerSec);
+    }
+
+    private static int bandwidth(GraphNeighbourData neighbourData) {
+        int max = 0;
+        for (int i = 0; i < neighbourData.size(); i++) {
+            for (int p = neighbourData.offsets[i]; p < neighbourData.offsets[i + 1]; p++) {
+                max = Math.max(max, Math.abs(i - neighbourData.targets[p]));
+            }
+        }
+        return max;
+    }
+
+    private static double averageSpan(GraphNeighbourData neighbourData) {
+        long sum = 0;
+        for (int i = 0; i < neighbourData.size(); i++) {
+            for (int p = neighbourData.offsets[i]; p < neighbourData.offsets[i + 1]; p++) {
+                sum += Math.abs(i - neighbourData.targets[p]);
+            }
+        }
+        return sum / (double) Math.max(1, neighbourData.targets.length);
+    }
+}
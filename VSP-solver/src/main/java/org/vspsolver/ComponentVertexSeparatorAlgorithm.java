@@ -0,0 +1,188 @@
+package org.vspsolver;
+
+import org.graph4j.Graph;
+import org.graph4j.vsp.VertexSeparator;
+import org.graph4j.vsp.VertexSeparatorBase;
+import org.vspsolver.util.ComponentDecomposition;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.GraphNeighbourUtil;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+public class ComponentVertexSeparatorAlgorithm<S extends VertexSeparatorBase> extends VertexSeparatorBase {
+
+    @FunctionalInterface
+    public interface SolverFactory<S extends VertexSeparatorBase> {
+        S create(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData);
+    }
+
+    private final Graph graph;
+    private final int maxShoreSize;
+    private final GraphNeighbourData neighbourData;
+    private final SolverFactory<S> solverFactory;
+
+    private S solver;
+    private long preprocessingMs;
+
+    public ComponentVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData,
+                                             SolverFactory<S> solverFactory) {
+        super(graph, maxShoreSize);
+        this.graph = graph;
+        this.maxShoreSize = maxShoreSize;
+        this.neighbourData = neighbourData;
+        this.solverFactory = solverFactory;
+    }
+
+    @Override
+    public Graph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public VertexSeparator getSeparator() {
+        long startTime = System.currentTimeMillis();
+        ComponentDecomposition components = ComponentDecomposition.of(neighbourData);
+
+        if (components.numComponents > 1) {
+            byte[] shoreOf = components.packIntoShores(maxShoreSize);
+            if (shoreOf != null) {
+                preprocessingMs = System.currentTimeMillis() - startTime;
+                return assemble(components, shoreOf, null, null, null);
+            }
+
+            int split = components.largestComponent();
+            shoreOf = components.packAround(split, maxShoreSize);
+            if (shoreOf != null) {
+                int loadA = 0, loadB = 0;
+                for (int c = 0; c < components.numComponents; c++) {
+                    if (shoreOf[c] == 0) loadA += components.componentWeights[c];
+                    else if (shoreOf[c] == 1) loadB += components.componentWeights[c];
+                }
+                // the split's larger shore can always go next to the lighter load; the other components
+                // are packed again around the shores the solver actually returns
+                int splitShoreSize = maxShoreSize - Math.min(loadA, loadB);
+
+                if (splitShoreSize >= 1 && components.componentSizes[split] >= 2) {
+                    int[] vertices = components.verticesOf(split);
+                    GraphNeighbourData splitData = GraphNeighbourUtil.induced(neighbourData, vertices);
+                    solver = solverFactory.create(GraphNeighbourUtil.toGraph(splitData), splitShoreSize, splitData);
+                    VertexSeparator splitSeparator = solver.getSeparator();
+                    preprocessingMs = System.currentTimeMillis() - startTime;
+                    return assembleAround(components, split, shoreOf, loadA, loadB, splitSeparator);
+                }
+            }
+        }
+
+        solver = solverFactory.create(graph, maxShoreSize, neighbourData);
+        preprocessingMs = System.currentTimeMillis() - startTime;
+        return solver.getSeparator();
+    }
+
+    private VertexSeparator assembleAround(ComponentDecomposition components, int split, byte[] shoreOf,
+                                           int loadA, int loadB, VertexSeparator splitSeparator) {
+        int[] left = splitSeparator.leftShore().vertices();
+        int[] right = splitSeparator.rightShore().vertices();
+        int weightLeft = neighbourData.weightOf(left);
+        int weightRight = neighbourData.weightOf(right);
+
+        byte[] repacked = components.packAround(split, maxShoreSize - weightLeft, maxShoreSize - weightRight);
+        if (repacked != null) {
+            return assemble(components, repacked, left, right, splitSeparator.separator().vertices());
+        }
+
+        // no packing fits both shores: keep the first packing, put the larger split shore next to the lighter
+        // load and move the cheapest vertices of the other one into C until it fits
+        boolean leftOnA = (weightLeft >= weightRight) == (loadA <= loadB);
+        int[] onA = leftOnA ? left : right;
+        int[] onB = leftOnA ? right : left;
+        int[] moved = (loadA <= loadB) ? onB : onA;
+        int room = maxShoreSize - Math.max(loadA, loadB);
+        int[] kept = trimToWeight(moved, room);
+        int[] trimmed = removeAll(moved, kept);
+        int[] separator = concat(splitSeparator.separator().vertices(), trimmed);
+        if (moved == onB) {
+            return assemble(components, shoreOf, onA, kept, separator);
+        }
+        return assemble(components, shoreOf, kept, onB, separator);
+    }
+
+    // the vertices kept on a shore with the given room, dropping the ones with the lowest cost per weight first
+    private int[] trimToWeight(int[] shore, int room) {
+        int weight = neighbourData.weightOf(shore);
+        if (weight <= room) {
+            return shore;
+        }
+        Integer[] order = new Integer[shore.length];
+        for (int k = 0; k < shore.length; k++) {
+            order[k] = shore[k];
+        }
+        Arrays.sort(order, Comparator.comparingDouble(id -> {
+            int i = neighbourData.indexOf(id);
+            return neighbourData.costs[i] / (double) neighbourData.weights[i];
+        }));
+        int numDropped = 0;
+        while (weight > room) {
+            weight -= neighbourData.weights[neighbourData.indexOf(order[numDropped++])];
+        }
+        int[] kept = new int[shore.length - numDropped];
+        for (int k = numDropped; k < shore.length; k++) {
+            kept[k - numDropped] = order[k];
+        }
+        return kept;
+    }
+
+    private static int[] removeAll(int[] from, int[] kept) {
+        Set<Integer> keep = new HashSet<>();
+        for (int v : kept) {
+            keep.add(v);
+        }
+        int[] removed = new int[from.length - kept.length];
+        int k = 0;
+        for (int v : from) {
+            if (!keep.contains(v)) {
+                removed[k++] = v;
+            }
+        }
+        return removed;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+
+    private VertexSeparator assemble(ComponentDecomposition components, byte[] shoreOf,
+                                     int[] splitLeft, int[] splitRight, int[] splitSeparator) {
+        VertexSeparator sep = new VertexSeparator(graph, maxShoreSize);
+        for (int v = 0; v < neighbourData.size(); v++) {
+            byte shore = shoreOf[components.componentOf[v]];
+            if (shore == 0) {
+                sep.leftShore().add(neighbourData.ids[v]);
+            } else if (shore == 1) {
+                sep.rightShore().add(neighbourData.ids[v]);
+            }
+        }
+        if (splitSeparator != null) {
+            sep.leftShore().addAll(splitLeft);
+            sep.rightShore().addAll(splitRight);
+            sep.separator().addAll(splitSeparator);
+        }
+        return sep;
+    }
+
+    public S getSolver() {
+        return solver;
+    }
+
+    public long getBestFoundAtMs(ToLongFunction<S> solverBestFoundAtMs) {
+        if (solver == null) {
+            return preprocessingMs;
+        }
+        return preprocessingMs + solverBestFoundAtMs.applyAsLong(solver);
+    }
+}
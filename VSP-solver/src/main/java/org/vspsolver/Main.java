@@ -8,18 +8,26 @@ import org.graph4j.vsp.VertexSeparator;
 import org.graph4j.vsp.VertexSeparatorBase;
 import org.vspsolver.lsvsp.BlsVertexSeparatorAlgorithm;
 import org.vspsolver.lsvsp.IlsVertexSeparatorAlgorithm;
+import org.vspsolver.lsvsp.ParallelBlsVertexSeparatorAlgorithm;
 import org.vspsolver.prvsp.PrVertexSeparatorAlgorithm;
 import org.vspsolver.prvsp.EprVertexSeparatorAlgorithm;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.GraphReduction;
+import org.vspsolver.util.InstanceCache;
 import org.vspsolver.util.InstanceParser;
+import org.vspsolver.util.LoadedInstance;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.stream.Collectors;
 
 public final class Main {
 
-    private enum AlgName { GREEDY, BKT, BLS, ILS, PR, EPR }
+    private enum AlgName { GREEDY, BKT, BLS, PBLS, ILS, PR, EPR }
 
     public static void main(String[] args) throws IOException {
         String instancesDir = "/home/paul/vsp_instances";
@@ -29,38 +37,63 @@ public final class Main {
         int runsPerInstance = 20;
         long timeLimitMillis = 10_000;
 
+        int prefetchDepth = 1;
+        boolean reorderVertices = false;
+        GraphReduction.ENABLED = false;
+
         List<Path> files = listInstanceFiles(instancesDir);
 
+        List<Path> filesToRun = new ArrayList<>();
+        List<Integer> fileIndices = new ArrayList<>();
         int instanceIndex = 0;
         for (Path file : files) {
             String fileName = normalizeFileName(file.getFileName().toString());
             String target = normalizeFileName(startFromFile);
+            instanceIndex++;
 
             if (target != null && !target.isEmpty()) {
                 if (!fileName.equals(target)) {
                     System.out.println("Skipping until '" + target + "': saw '" + fileName + "'");
-                    instanceIndex++;
                     continue;
                 } else {
                     System.out.println("Matched startFromFile '" + target + "'. Starting here.");
                     startFromFile = null;
                 }
             }
+            filesToRun.add(file);
+            fileIndices.add(instanceIndex);
+        }
 
-            overwriteCurrentRunFile(fileName);
-            instanceIndex++;
-            String instanceName = file.getFileName().toString();
+        BlockingQueue<PrefetchedInstance> prefetched = new ArrayBlockingQueue<>(prefetchDepth);
+        Thread loader = new Thread(() -> prefetchInstances(filesToRun, prefetched), "instance-loader");
+        loader.setDaemon(true);
+        loader.start();
 
-            Pair<Graph, Integer> graphMaxShoreSizePair;
+        for (int k = 0; k < filesToRun.size(); k++) {
+            PrefetchedInstance next;
             try {
-                graphMaxShoreSizePair = InstanceParser.loadGraphFromGZ(file.toString());
-            } catch (Exception e) {
-                System.out.println("Skipping (load error): " + instanceName + " -> " + e.getMessage());
+                next = prefetched.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            Path file = next.file;
+            overwriteCurrentRunFile(normalizeFileName(file.getFileName().toString()));
+            instanceIndex = fileIndices.get(k);
+            String instanceName = file.getFileName().toString();
+
+            if (next.error != null) {
+                System.out.println("Skipping (load error): " + instanceName + " -> " + next.error.getMessage());
                 continue;
             }
+            LoadedInstance instance = next.instance;
+            GraphNeighbourData neighbourData = reorderVertices
+                    ? GraphNeighbourUtil.reorderRcm(instance.neighbourData)
+                    : instance.neighbourData;
 
-            Graph graph = graphMaxShoreSizePair.first();
-            int maxShoreSize = graphMaxShoreSizePair.second();
+            Graph graph = instance.graph;
+            int maxShoreSize = instance.maxShoreSize;
             int n = graph.numVertices();
 
             System.out.println();
@@ -74,6 +107,7 @@ public final class Main {
                     // AlgName.GREEDY,
                     // AlgName.BKT,
                     AlgName.BLS,
+                    // AlgName.PBLS,
                     AlgName.ILS,
                     AlgName.PR,
                     AlgName.EPR
@@ -96,7 +130,8 @@ public final class Main {
                                 " | limit=" + timeLimitMillis + "ms" +
                                 " | starting...");
 
-                        RunResult rr = runOnce(alg, graph, maxShoreSize, timeLimitMillis, seed);
+                        RunResult rr = runOnce(alg, graph, neighbourData, maxShoreSize, instance.costUnit,
+                                timeLimitMillis, seed);
 
                         System.out.println("  Done  | time=" + rr.timeMs + "ms" +
                                 " | sep=" + rr.sepSize +
@@ -122,6 +157,34 @@ public final class Main {
         System.out.println("Done. Output folder: " + outDir);
     }
 
+    private static void prefetchInstances(List<Path> files, BlockingQueue<PrefetchedInstance> queue) {
+        try {
+            for (Path file : files) {
+                PrefetchedInstance next;
+                try {
+                    next = new PrefetchedInstance(file, InstanceCache.load(file), null);
+                } catch (Exception e) {
+                    next = new PrefetchedInstance(file, null, e);
+                }
+                queue.put(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class PrefetchedInstance {
+        final Path file;
+        final LoadedInstance instance;
+        final Exception error;
+
+        PrefetchedInstance(Path file, LoadedInstance instance, Exception error) {
+            this.file = file;
+            this.instance = instance;
+            this.error = error;
+        }
+    }
+
     private static List<Path> listInstanceFiles(String dir) throws IOException {
         try (var stream = Files.list(Paths.get(dir))) {
             return stream
@@ -146,7 +209,8 @@ public final class Main {
                 "right_size",
                 "valid",
                 "best_time_ms",
-                "error"
+                "error",
+                "sep_cost"
         ));
     }
 
@@ -165,11 +229,13 @@ public final class Main {
                 Integer.toString(runResult.rightSize),
                 Boolean.toString(runResult.valid),
                 Long.toString(runResult.bestTimeMs),
-                err
+                err,
+                String.format(Locale.ROOT, "%.6f", runResult.sepCost)
         );
     }
 
-    private static RunResult runOnce(AlgName alg, Graph graph, int maxShoreSize, long timeLimitMillis, long seed) {
+    private static RunResult runOnce(AlgName alg, Graph graph, GraphNeighbourData neighbourData, int maxShoreSize,
+                                     double costUnit, long timeLimitMillis, long seed) {
         long startTime = System.nanoTime();
         try {
             VertexSeparator sep;
@@ -186,24 +252,39 @@ public final class Main {
                     sep = vspAlg.getSeparator();
                 }
                 case BLS -> {
-                    vspAlg = new BlsVertexSeparatorAlgorithm(graph.copy(), maxShoreSize);
-                    sep = vspAlg.getSeparator();
-                    bestFoundAtMs = ((BlsVertexSeparatorAlgorithm) vspAlg).getBestFoundAtMs();
+                    var decomposed = new ComponentVertexSeparatorAlgorithm<>(graph.copy(), maxShoreSize, neighbourData,
+                            BlsVertexSeparatorAlgorithm::new);
+                    vspAlg = decomposed;
+                    sep = decomposed.getSeparator();
+                    bestFoundAtMs = decomposed.getBestFoundAtMs(BlsVertexSeparatorAlgorithm::getBestFoundAtMs);
+                }
+                case PBLS -> {
+                    var decomposed = new ComponentVertexSeparatorAlgorithm<>(graph.copy(), maxShoreSize, neighbourData,
+                            ParallelBlsVertexSeparatorAlgorithm::new);
+                    vspAlg = decomposed;
+                    sep = decomposed.getSeparator();
+                    bestFoundAtMs = decomposed.getBestFoundAtMs(ParallelBlsVertexSeparatorAlgorithm::getBestFoundAtMs);
                 }
                 case ILS -> {
-                    vspAlg = new IlsVertexSeparatorAlgorithm(graph.copy(), maxShoreSize);
-                    sep = vspAlg.getSeparator();
-                    bestFoundAtMs = ((IlsVertexSeparatorAlgorithm) vspAlg).getBestFoundAtMs();
+                    var decomposed = new ComponentVertexSeparatorAlgorithm<>(graph.copy(), maxShoreSize, neighbourData,
+                            IlsVertexSeparatorAlgorithm::new);
+                    vspAlg = decomposed;
+                    sep = decomposed.getSeparator();
+                    bestFoundAtMs = decomposed.getBestFoundAtMs(IlsVertexSeparatorAlgorithm::getBestFoundAtMs);
                 }
                 case PR -> {
-                    vspAlg = new PrVertexSeparatorAlgorithm(graph.copy(), maxShoreSize);
-                    sep = vspAlg.getSeparator();
-                    bestFoundAtMs = ((PrVertexSeparatorAlgorithm) vspAlg).getBestFoundAtMs();
+                    var decomposed = new ComponentVertexSeparatorAlgorithm<>(graph.copy(), maxShoreSize, neighbourData,
+                            PrVertexSeparatorAlgorithm::new);
+                    vspAlg = decomposed;
+                    sep = decomposed.getSeparator();
+                    bestFoundAtMs = decomposed.getBestFoundAtMs(PrVertexSeparatorAlgorithm::getBestFoundAtMs);
                 }
                 case EPR -> {
-                    vspAlg = new EprVertexSeparatorAlgorithm(graph.copy(), maxShoreSize);
-                    sep = vspAlg.getSeparator();
-                    bestFoundAtMs = ((EprVertexSeparatorAlgorithm) vspAlg).getBestFoundAtMs();
+                    var decomposed = new ComponentVertexSeparatorAlgorithm<>(graph.copy(), maxShoreSize, neighbourData,
+                            EprVertexSeparatorAlgorithm::new);
+                    vspAlg = decomposed;
+                    sep = decomposed.getSeparator();
+                    bestFoundAtMs = decomposed.getBestFoundAtMs(EprVertexSeparatorAlgorithm::getBestFoundAtMs);
                 }
                 default -> throw new IllegalStateException("Unknown algorithm: " + alg);
             }
@@ -212,8 +293,9 @@ public final class Main {
             long elapsedMs = (endTime - startTime) / 1_000_000L;
 
             boolean valid = sep.isValid();
-            return RunResult.ok(elapsedMs, sep.separator().size(), sep.leftShore().size(), sep.rightShore().size(),
-                    valid, bestFoundAtMs);
+            double sepCost = neighbourData.costOf(sep.separator().vertices()) * costUnit;
+            return RunResult.ok(elapsedMs, sep.separator().size(), sepCost, sep.leftShore().size(),
+                    sep.rightShore().size(), valid, bestFoundAtMs);
 
         } catch (Throwable e) {
             long t1 = System.nanoTime();
@@ -1,16 +1,15 @@
 package org.vspsolver.lsvsp;
 
 import org.graph4j.Graph;
-import org.graph4j.util.VertexSet;
 import org.graph4j.vsp.VertexSeparator;
 import org.graph4j.vsp.VertexSeparatorBase;
 import org.vspsolver.util.GraphNeighbourData;
 import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.GraphReduction;
 import org.vspsolver.util.Utils;
 
-import java.util.BitSet;
-import java.util.Map;
 import java.util.Random;
+import java.util.function.IntPredicate;
 
 public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
 
@@ -31,45 +30,62 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     public int MAXSLO = 500;
 
     private final Graph graph;
-    private final int n;
     private final int maxShoreSize;
 
     private final Random random;
     private final LocalSearchState state;
     private final HashMemory hashMemory;
+    private final IntPredicate nonTabuToA;
+    private final IntPredicate nonTabuToB;
 
     private int iterCurrent;
     private int lastCycle;
     private double wc;
     private int maxInc = 100;
 
-    private Map<Integer, int[]> neighbourhood;
+    private final GraphReduction reduction;
+    private final GraphNeighbourData neighbourData;
 
     private VertexSeparator best;
 
-    private final boolean logIterations = true;
     private final int logEvery = 100;
     private long bestFoundAtMs = -1;
     private int bestObjective = Integer.MAX_VALUE;
 
+    // set by ParallelBlsVertexSeparatorAlgorithm for its workers
+    boolean logIterations = true;
+    SharedIncumbent incumbent;
+    int workerId;
+    int restartAfterIterations;
+    private int restarts;
+
     public BlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize) {
+        this(graph, maxShoreSize, GraphNeighbourUtil.build(graph));
+    }
+
+    public BlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData) {
+        this(graph, maxShoreSize, GraphReduction.reduce(neighbourData, maxShoreSize));
+    }
+
+    BlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphReduction reduction) {
         super(graph, maxShoreSize);
         this.graph = graph;
-        this.n = graph.numVertices();
-        this.maxShoreSize = maxShoreSize;
 
-        GraphNeighbourData data = GraphNeighbourUtil.build(graph);
-        this.neighbourhood = data.getNeighbourhoodAsMap();
+        this.reduction = reduction;
+        this.neighbourData = reduction.reduced;
+        this.maxShoreSize = reduction.reducedMaxShoreSize;
 
         this.random = new Random(seed);
-        this.state = new LocalSearchState(graph, maxShoreSize, neighbourhood, true);
-        this.hashMemory = new HashMemory(n, MAXHS, MAXSLO, random);
+        this.state = new LocalSearchState(graph, this.maxShoreSize, this.neighbourData, true);
+        this.hashMemory = new HashMemory(MAXHS, MAXSLO);
+        this.nonTabuToA = v -> !state.isTabu(v, (byte)0, iterCurrent) && state.isLegalMoveFromC(v, (byte)0);
+        this.nonTabuToB = v -> !state.isTabu(v, (byte)1, iterCurrent) && state.isLegalMoveFromC(v, (byte)1);
 
         this.iterCurrent = 0;
         this.lastCycle = 0;
         this.wc = 0;
 
-        this.best = new VertexSeparator(graph, maxShoreSize);
+        this.best = new VertexSeparator(graph, this.maxShoreSize);
     }
 
     @Override
@@ -80,70 +96,113 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     @Override
     public VertexSeparator getSeparator() {
         run();
-        return new VertexSeparator(best);
+        return bestSeparator();
+    }
+
+    VertexSeparator bestSeparator() {
+        return reduction.lift(graph, new VertexSeparator(best));
     }
 
-    private void run() {
+    void run() {
         long startTime = System.currentTimeMillis();
         long deadline = startTime + timeLimitMillis;
+        random.setSeed(seed);
 
-        VertexSeparator current = generateInitialSolution();
-        current = descentBasedSearch(current);
-        best = new VertexSeparator(current);
-        bestObjective = best.separator().size();
+        state.loadFrom(generateInitialSolution());
+        descentBasedSearch();
+        int currentObjective = state.costC;
+        best = state.makeStateIntoSeparator();
+        bestObjective = currentObjective;
         bestFoundAtMs = System.currentTimeMillis() - startTime;
+        publishBest();
+        int lastImprovement = iterCurrent;
 
-        int L = clampJumpMagnitude((int)Math.round(LMIN_FRAC * Math.max(1, current.separator().size())),
-                current.separator().size());
+        int L = clampJumpMagnitude((int)Math.round(LMIN_FRAC * Math.max(1, state.countC)), state.countC);
 
         if (logIterations) {
-            logIteration(iterCurrent, current.separator().size(), best.separator().size(), L, null, -1,
+            logIteration(iterCurrent, currentObjective, bestObjective, L, null, -1,
                     System.currentTimeMillis() - startTime);
         }
 
         while (System.currentTimeMillis() < deadline) {
             iterCurrent++;
 
-            int prev = previousEncounter(current);
+            int prev = previousEncounter();
 
-            L = determineJumpMagnitude(L, prev, current.separator().size());
+            L = determineJumpMagnitude(L, prev, state.countC);
             PerturbationType perturbationType = determinePerturbationType(prev);
 
-            current = perturb(current, L, perturbationType);
-            current = descentBasedSearch(current);
+            perturb(L, perturbationType);
+            descentBasedSearch();
+            currentObjective = state.costC;
 
-            if (current.separator().size() < best.separator().size()) {
-                best = new VertexSeparator(current);
+            if (currentObjective < bestObjective) {
+                best = state.makeStateIntoSeparator();
 
-                bestObjective = best.separator().size();
+                bestObjective = currentObjective;
                 bestFoundAtMs = System.currentTimeMillis() - startTime;
+                publishBest();
+                lastImprovement = iterCurrent;
+            } else if (restartAfterIterations > 0 && iterCurrent - lastImprovement >= restartAfterIterations) {
+                restartFromIncumbent();
+                lastImprovement = iterCurrent;
             }
 
             if (logIterations && (iterCurrent % logEvery == 0)) {
-                logIteration(iterCurrent, current.separator().size(), best.separator().size(), L, perturbationType, prev,
+                logIteration(iterCurrent, currentObjective, bestObjective, L, perturbationType, prev,
                         System.currentTimeMillis() - startTime);
             }
         }
     }
 
+    private void publishBest() {
+        if (incumbent != null) {
+            incumbent.offer(bestObjective, state.part, workerId, bestFoundAtMs);
+        }
+    }
+
+    private void restartFromIncumbent() {
+        SharedIncumbent.Snapshot shared = (incumbent != null) ? incumbent.get() : null;
+        if (shared == null || shared.cost >= bestObjective) {
+            return;
+        }
+        state.loadFrom(shared.part);
+        hashMemory.clear();
+        restarts++;
+    }
+
     private VertexSeparator generateInitialSolution() {
         VertexSeparator sep = new VertexSeparator(graph, maxShoreSize);
 
-        int[] vertices = graph.vertices();
+        int[] vertices = neighbourData.ids.clone();
         Utils.shuffle(vertices, random);
+        moveFittingTo(vertices, 0);
+        moveFittingTo(vertices, 1);
 
         sep.leftShore().add(vertices[0]);
         sep.rightShore().add(vertices[1]);
+        int loadA = neighbourData.weights[neighbourData.indexOf(vertices[0])];
+        int loadB = neighbourData.weights[neighbourData.indexOf(vertices[1])];
 
         for (int i = 2; i < vertices.length; i++) {
             int v = vertices[i];
-            if (sep.leftShore().size() < maxShoreSize && sep.rightShore().size() < maxShoreSize) {
-                if (random.nextBoolean()) sep.leftShore().add(v);
-                else sep.rightShore().add(v);
-            } else if (sep.leftShore().size() < maxShoreSize) {
+            int w = neighbourData.weights[neighbourData.indexOf(v)];
+            boolean fitsA = loadA + w <= maxShoreSize;
+            boolean fitsB = loadB + w <= maxShoreSize;
+            if (fitsA && fitsB) {
+                if (random.nextBoolean()) {
+                    sep.leftShore().add(v);
+                    loadA += w;
+                } else {
+                    sep.rightShore().add(v);
+                    loadB += w;
+                }
+            } else if (fitsA) {
                 sep.leftShore().add(v);
-            } else if (sep.rightShore().size() < maxShoreSize) {
+                loadA += w;
+            } else if (fitsB) {
                 sep.rightShore().add(v);
+                loadB += w;
             } else {
                 sep.separator().add(v);
             }
@@ -155,13 +214,30 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
         return sep;
     }
 
+    private void moveFittingTo(int[] vertices, int pos) {
+        for (int i = pos; i < vertices.length; i++) {
+            if (fitsEmptyShore(vertices[i])) {
+                int t = vertices[pos];
+                vertices[pos] = vertices[i];
+                vertices[i] = t;
+                return;
+            }
+        }
+    }
+
+    private boolean fitsEmptyShore(int v) {
+        return neighbourData.weights[neighbourData.indexOf(v)] <= maxShoreSize;
+    }
+
     private void repairABEdgesByPushingToC(VertexSeparator sep) {
         boolean changed;
         do {
             changed = false;
             int[] A = sep.leftShore().vertices();
             for (int a : A) {
-                for (int u : neighbourhood.get(a)) {
+                int i = neighbourData.indexOf(a);
+                for (int p = neighbourData.offsets[i]; p < neighbourData.offsets[i + 1]; p++) {
+                    int u = neighbourData.ids[neighbourData.targets[p]];
                     if (sep.rightShore().contains(u)) {
                         if (random.nextBoolean()) {
                             sep.leftShore().remove(a);
@@ -183,81 +259,45 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
 
     private void ensureNonEmptyShores(VertexSeparator sep) {
         if (sep.leftShore().isEmpty()) {
-            int vertex = Utils.pickAny(sep.separator(), random);
-            sep.separator().remove(vertex);
-            sep.leftShore().add(vertex);
+            int vertex = Utils.pickAny(sep.separator(), random, this::fitsEmptyShore);
+            if (vertex >= 0) {
+                sep.separator().remove(vertex);
+                sep.leftShore().add(vertex);
+            }
         }
         if (sep.rightShore().isEmpty()) {
-            int vertex = Utils.pickAny(sep.separator(), random);
-            sep.separator().remove(vertex);
-            sep.rightShore().add(vertex);
+            int vertex = Utils.pickAny(sep.separator(), random, this::fitsEmptyShore);
+            if (vertex >= 0) {
+                sep.separator().remove(vertex);
+                sep.rightShore().add(vertex);
+            }
         }
     }
 
-    private VertexSeparator descentBasedSearch(VertexSeparator start) {
-        state.loadFrom(start);
-
+    private void descentBasedSearch() {
         while (true) {
-            int vA = state.bucketA.peekMaxVertex();
-            int sA = (vA >= 0) ? state.scoreToA[vA] : Integer.MIN_VALUE;
-
-            int vB = state.bucketB.peekMaxVertex();
-            int sB = (vB >= 0) ? state.scoreToB[vB] : Integer.MIN_VALUE;
-
-            Move best = null;
-
-            if (vA >= 0 && state.isLegalMoveFromC(vA, (byte)0)) {
-                best = new Move(vA, (byte)0, sA);
-            }
-            if (vB >= 0 && state.isLegalMoveFromC(vB, (byte)1)) {
-                if (best == null || sB > best.score) best = new Move(vB, (byte)1, sB);
-            }
-
+            Move best = bestMove(1, state.legalToA, state.legalToB);
             if (best == null) {
-                best = scanBestLegalMove();
-            }
-            if (best == null || best.score <= 0) {
                 break;
             }
 
             state.applyMoveFromC(best.v, best.toShore, iterCurrent, random);
             state.forceNonEmptyShores(random);
         }
-
-        return state.makeStateIntoSeparator();
     }
 
-    private Move scanBestLegalMove() {
-        int bestV = -1;
-        byte bestTo = -1;
-        int bestScore = Integer.MIN_VALUE;
+    private Move bestMove(int minScore, IntPredicate acceptA, IntPredicate acceptB) {
+        int vA = state.isShoreFull((byte)0) ? -1 : state.bucketA.bestMatching(minScore, acceptA);
+        int sA = (vA >= 0) ? state.scoreToA[vA] : Integer.MIN_VALUE;
 
-        for (int v = 0; v < n; v++) {
-            if (state.part[v] != 2) {
-                continue;
-            }
-            if (state.isLegalMoveFromC(v, (byte)0)) {
-                int sc = state.scoreToA[v];
-                if (sc > bestScore) {
-                    bestScore = sc;
-                    bestV = v;
-                    bestTo = 0;
-                }
-            }
-            if (state.isLegalMoveFromC(v, (byte)1)) {
-                int sc = state.scoreToB[v];
-                if (sc > bestScore) {
-                    bestScore = sc;
-                    bestV = v;
-                    bestTo = 1;
-                }
-            }
+        int vB = state.isShoreFull((byte)1) ? -1 : state.bucketB.bestMatching((vA >= 0) ? sA + 1 : minScore, acceptB);
+        if (vB >= 0) {
+            return new Move(vB, (byte)1);
         }
-
-        if (bestV < 0) {
-            return null;
+        if (vA >= 0) {
+            return new Move(vA, (byte)0);
         }
-        return new Move(bestV, bestTo, bestScore);
+        return null;
     }
 
     private int determineJumpMagnitude(int L, int prevVisit, int cSize) {
@@ -305,9 +345,7 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
         return (e >= randomNum) ? PerturbationType.DIRP : PerturbationType.RNDP;
     }
 
-    private VertexSeparator perturb(VertexSeparator current, int L, PerturbationType type) {
-        state.loadFrom(current);
-
+    private void perturb(int L, PerturbationType type) {
         for (int i = 0; i < L; i++) {
             if (type == PerturbationType.RNDP) {
                 randomPerturbMove();
@@ -316,12 +354,10 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
             }
             state.forceNonEmptyShores(random);
         }
-
-        return state.makeStateIntoSeparator();
     }
 
     private void randomPerturbMove() {
-        int v = Utils.pickRandomInPart(state.part, (byte)2, random);
+        int v = state.parts.pickRandom((byte)2, random);
         if (v < 0) {
             return;
         }
@@ -342,48 +378,19 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     }
 
     private void directedPerturbMove() {
-        int bestV = -1;
-        byte bestTo = -1;
-        int bestScore = Integer.MIN_VALUE;
-
-        for (int v = 0; v < n; v++) {
-            if (state.part[v] != 2) continue;
-
-            if (state.isLegalMoveFromC(v, (byte)0) && !state.isTabu(v, (byte)0, iterCurrent)) {
-                int scoreC = state.scoreToA[v];
-                if (scoreC > bestScore) { bestScore = scoreC; bestV = v; bestTo = 0; }
-            }
-            if (state.isLegalMoveFromC(v, (byte)1) && !state.isTabu(v, (byte)1, iterCurrent)) {
-                int scoreC = state.scoreToB[v];
-                if (scoreC > bestScore) {
-                    bestScore = scoreC;
-                    bestV = v;
-                    bestTo = 1;
-                }
-            }
-        }
-
-        if (bestV < 0) {
-            Move move = scanBestLegalMove();
+        Move move = bestMove(Integer.MIN_VALUE, nonTabuToA, nonTabuToB);
+        if (move == null) {
+            move = bestMove(Integer.MIN_VALUE, state.legalToA, state.legalToB);
             if (move == null) {
                 return;
             }
-            bestV = move.v;
-            bestTo = move.toShore;
         }
 
-        state.applyMoveFromC(bestV, bestTo, iterCurrent, random);
+        state.applyMoveFromC(move.v, move.toShore, iterCurrent, random);
     }
 
-    private int previousEncounter(VertexSeparator current) {
-        BitSet bitSet = separatorBitSet(current.separator());
-        return hashMemory.touch(bitSet, iterCurrent);
-    }
-
-    private BitSet separatorBitSet(VertexSet sepSet) {
-        BitSet bs = new BitSet(n);
-        for (int v : sepSet.vertices()) bs.set(v);
-        return bs;
+    private int previousEncounter() {
+        return hashMemory.touch(state.hashC, state.fingerprintC, iterCurrent);
     }
 
     private enum PerturbationType { DIRP, RNDP }
@@ -391,11 +398,9 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     private static final class Move {
         final int v;
         final byte toShore;
-        final int score;
-        Move(int v, byte toShore, int score) {
+        Move(int v, byte toShore) {
             this.v = v;
             this.toShore = toShore;
-            this.score = score;
         }
     }
 
@@ -412,6 +417,10 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
         );
     }
 
+    public int getIterations() {
+        return iterCurrent;
+    }
+
     public int getBestObjective() {
         return bestObjective;
     }
@@ -419,4 +428,8 @@ public class BlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     public long getBestFoundAtMs() {
         return bestFoundAtMs;
     }
+
+    public int getRestarts() {
+        return restarts;
+    }
 }
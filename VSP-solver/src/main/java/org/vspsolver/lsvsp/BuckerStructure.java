@@ -1,14 +1,21 @@
 package org.vspsolver.lsvsp;
 
 import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+public class BuckerStructure implements GainStructure {
+    private static final int NONE = -1;
 
-public class BuckerStructure {
     private final int minScore;
     private final int maxScore;
     private final int offset;
-    private final BucketNode[] heads;
-    private final BucketNode[] nodeOf;
-    private final boolean[] present;
+    private final int[] head;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] touched;
+    private final boolean[] isTouched;
+    private int numTouched;
     private int currentMaxScore;
     private int count;
 
@@ -19,23 +26,35 @@ public class BuckerStructure {
         this.minScore = minScore;
         this.maxScore = maxScore;
         this.offset = -minScore;
-        this.heads = new BucketNode[maxScore - minScore + 1];
-        this.nodeOf = new BucketNode[nVertices];
-        this.present = new boolean[nVertices];
+        this.head = new int[maxScore - minScore + 1];
+        this.next = new int[nVertices];
+        this.prev = new int[nVertices];
+        this.bucketOf = new int[nVertices];
+        this.touched = new int[head.length];
+        this.isTouched = new boolean[head.length];
+        Arrays.fill(head, NONE);
+        Arrays.fill(bucketOf, NONE);
+        this.numTouched = 0;
         this.currentMaxScore = minScore;
         this.count = 0;
     }
 
     public void clear() {
-        Arrays.fill(heads, null);
-        Arrays.fill(nodeOf, null);
-        Arrays.fill(present, false);
+        for (int i = 0; i < numTouched; i++) {
+            int idx = touched[i];
+            for (int v = head[idx]; v != NONE; v = next[v]) {
+                bucketOf[v] = NONE;
+            }
+            head[idx] = NONE;
+            isTouched[idx] = false;
+        }
+        numTouched = 0;
         count = 0;
         currentMaxScore = minScore;
     }
 
     public boolean contains(int v) {
-        return present[v];
+        return bucketOf[v] != NONE;
     }
 
     public boolean isEmpty() {
@@ -48,16 +67,17 @@ public class BuckerStructure {
 
     public void insert(int v, int score) {
         int idx = score + offset;
-        BucketNode node = new BucketNode(v);
-        nodeOf[v] = node;
-        present[v] = true;
-
-        BucketNode head = heads[idx];
-        if (head != null) {
-            node.next = head;
-            head.prev = node;
+        int first = head[idx];
+        prev[v] = NONE;
+        next[v] = first;
+        if (first != NONE) {
+            prev[first] = v;
+        } else if (!isTouched[idx]) {
+            isTouched[idx] = true;
+            touched[numTouched++] = idx;
         }
-        heads[idx] = node;
+        head[idx] = v;
+        bucketOf[v] = idx;
 
         if (count == 0 || score > currentMaxScore) {
             currentMaxScore = score;
@@ -66,58 +86,66 @@ public class BuckerStructure {
     }
 
     public void remove(int v, int score) {
-        if (!present[v]) {
-            return;
-        }
-        int idx = score + offset;
-        BucketNode node = nodeOf[v];
-        if (node == null) {
+        int idx = bucketOf[v];
+        if (idx == NONE) {
             return;
         }
-
-        if (node.prev != null) {
-            node.prev.next = node.next;
-        } else {
-            heads[idx] = node.next;
-        }
-
-        if (node.next != null) {
-            node.next.prev = node.prev;
-        }
-
-        nodeOf[v] = null;
-        present[v] = false;
+        unlink(v, idx);
         count--;
 
         if (count == 0) {
             currentMaxScore = minScore;
             return;
         }
-        if (score == currentMaxScore && heads[idx] == null) {
-            for (int score1 = currentMaxScore; score1 >= minScore; score1--) {
-                BucketNode head = heads[score1 + offset];
-                if (head != null) {
-                    currentMaxScore = score1; return;
+        if (idx - offset == currentMaxScore && head[idx] == NONE) {
+            for (int i = idx - 1; i >= 0; i--) {
+                if (head[i] != NONE) {
+                    currentMaxScore = i - offset;
+                    return;
                 }
             }
         }
     }
 
     public void shift(int v, int oldScore, int newScore) {
-        if (!present[v]) {
+        int idx = bucketOf[v];
+        if (idx == NONE) {
             return;
         }
-        remove(v, oldScore);
-        insert(v, newScore);
+        unlink(v, idx);
+
+        int newIdx = newScore + offset;
+        int first = head[newIdx];
+        prev[v] = NONE;
+        next[v] = first;
+        if (first != NONE) {
+            prev[first] = v;
+        } else if (!isTouched[newIdx]) {
+            isTouched[newIdx] = true;
+            touched[numTouched++] = newIdx;
+        }
+        head[newIdx] = v;
+        bucketOf[v] = newIdx;
+
+        if (newScore > currentMaxScore) {
+            currentMaxScore = newScore;
+        } else if (idx - offset == currentMaxScore && head[idx] == NONE) {
+            // the top bucket emptied, v itself bounds the scan from below
+            int i = idx - 1;
+            while (head[i] == NONE) {
+                i--;
+            }
+            currentMaxScore = i - offset;
+        }
     }
 
     public int peekMaxVertex() {
         if (count == 0) return -1;
-        for (int score = currentMaxScore; score >= minScore; score--) {
-            BucketNode head = heads[score + offset];
-            if (head != null) {
-                currentMaxScore = score;
-                return head.v;
+        for (int idx = currentMaxScore + offset; idx >= 0; idx--) {
+            int v = head[idx];
+            if (v != NONE) {
+                currentMaxScore = idx - offset;
+                return v;
             }
         }
         return -1;
@@ -126,4 +154,47 @@ public class BuckerStructure {
     public int getCurrentMaxScore() {
         return currentMaxScore;
     }
+
+    public int bestMatching(int minScore, IntPredicate accept) {
+        if (count == 0) {
+            return -1;
+        }
+        int low = Math.max(minScore, this.minScore) + offset;
+        for (int idx = currentMaxScore + offset; idx >= low; idx--) {
+            for (int v = head[idx]; v != NONE; v = next[v]) {
+                if (accept.test(v)) {
+                    return v;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public void visitDescending(int minScore, IntPredicate visitor) {
+        if (count == 0) {
+            return;
+        }
+        int low = Math.max(minScore, this.minScore) + offset;
+        for (int idx = currentMaxScore + offset; idx >= low; idx--) {
+            for (int v = head[idx]; v != NONE; v = next[v]) {
+                if (!visitor.test(v)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void unlink(int v, int idx) {
+        int p = prev[v];
+        int nx = next[v];
+        if (p != NONE) {
+            next[p] = nx;
+        } else {
+            head[idx] = nx;
+        }
+        if (nx != NONE) {
+            prev[nx] = p;
+        }
+        bucketOf[v] = NONE;
+    }
 }
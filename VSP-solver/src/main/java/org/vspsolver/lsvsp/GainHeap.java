@@ -0,0 +1,218 @@
+package org.vspsolver.lsvsp;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// used instead of the buckets when the score range is too wide
+public class GainHeap implements GainStructure {
+    private final int minScore;
+    private final int[] heap;
+    private final int[] pos;
+    private final int[] key;
+    private final int[] stack;
+    private final int[] frontier;
+    private int count;
+
+    public GainHeap(int minScore, int nVertices) {
+        this.minScore = minScore;
+        this.heap = new int[nVertices];
+        this.pos = new int[nVertices];
+        this.key = new int[nVertices];
+        this.stack = new int[nVertices + 1];
+        this.frontier = new int[nVertices + 1];
+        Arrays.fill(pos, -1);
+        this.count = 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            pos[heap[i]] = -1;
+        }
+        count = 0;
+    }
+
+    public boolean contains(int v) {
+        return pos[v] >= 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void insert(int v, int score) {
+        key[v] = score;
+        heap[count] = v;
+        pos[v] = count;
+        siftUp(count++);
+    }
+
+    public void remove(int v, int score) {
+        int i = pos[v];
+        if (i < 0) {
+            return;
+        }
+        pos[v] = -1;
+        int last = heap[--count];
+        if (i == count) {
+            return;
+        }
+        heap[i] = last;
+        pos[last] = i;
+        siftDown(i);
+        siftUp(pos[last]);
+    }
+
+    public void shift(int v, int oldScore, int newScore) {
+        int i = pos[v];
+        if (i < 0) {
+            return;
+        }
+        key[v] = newScore;
+        if (newScore > oldScore) {
+            siftUp(i);
+        } else {
+            siftDown(i);
+        }
+    }
+
+    public int peekMaxVertex() {
+        return count == 0 ? -1 : heap[0];
+    }
+
+    public int getCurrentMaxScore() {
+        return count == 0 ? minScore : key[heap[0]];
+    }
+
+    public int bestMatching(int minScore, IntPredicate accept) {
+        int best = -1;
+        int bound = minScore;
+        int top = 0;
+        if (count > 0) {
+            stack[top++] = 0;
+        }
+        while (top > 0) {
+            int i = stack[--top];
+            int v = heap[i];
+            if (key[v] < bound) {
+                continue;
+            }
+            if (accept.test(v)) {
+                best = v;
+                bound = key[v] + 1;
+                continue;
+            }
+            int child = 2 * i + 1;
+            if (child + 1 < count) {
+                stack[top++] = child + 1;
+            }
+            if (child < count) {
+                stack[top++] = child;
+            }
+        }
+        return best;
+    }
+
+    public void visitDescending(int minScore, IntPredicate visitor) {
+        int size = 0;
+        if (count > 0) {
+            frontier[size++] = 0;
+        }
+        while (size > 0) {
+            int i = frontier[0];
+            frontier[0] = frontier[--size];
+            frontierSiftDown(size);
+            int v = heap[i];
+            if (key[v] < minScore || !visitor.test(v)) {
+                return;
+            }
+            int child = 2 * i + 1;
+            if (child < count) {
+                size = frontierPush(size, child);
+            }
+            if (child + 1 < count) {
+                size = frontierPush(size, child + 1);
+            }
+        }
+    }
+
+    private int frontierPush(int size, int i) {
+        int k = key[heap[i]];
+        int j = size;
+        while (j > 0) {
+            int parent = (j - 1) >>> 1;
+            if (key[heap[frontier[parent]]] >= k) {
+                break;
+            }
+            frontier[j] = frontier[parent];
+            j = parent;
+        }
+        frontier[j] = i;
+        return size + 1;
+    }
+
+    private void frontierSiftDown(int size) {
+        if (size == 0) {
+            return;
+        }
+        int i = frontier[0];
+        int k = key[heap[i]];
+        int j = 0;
+        int half = size >>> 1;
+        while (j < half) {
+            int child = 2 * j + 1;
+            int right = child + 1;
+            if (right < size && key[heap[frontier[right]]] > key[heap[frontier[child]]]) {
+                child = right;
+            }
+            if (k >= key[heap[frontier[child]]]) {
+                break;
+            }
+            frontier[j] = frontier[child];
+            j = child;
+        }
+        frontier[j] = i;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        int k = key[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int u = heap[parent];
+            if (key[u] >= k) {
+                break;
+            }
+            heap[i] = u;
+            pos[u] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        int k = key[v];
+        int half = count >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < count && key[heap[right]] > key[heap[child]]) {
+                child = right;
+            }
+            int u = heap[child];
+            if (k >= key[u]) {
+                break;
+            }
+            heap[i] = u;
+            pos[u] = i;
+            i = child;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+}
@@ -0,0 +1,73 @@
+package org.vspsolver.lsvsp;
+
+import org.vspsolver.util.GraphNeighbourData;
+
+import java.util.function.IntPredicate;
+
+public interface GainStructure {
+    int MAX_BUCKET_RANGE = 1 << 20;
+
+    void clear();
+
+    boolean contains(int v);
+
+    boolean isEmpty();
+
+    int size();
+
+    void insert(int v, int score);
+
+    void remove(int v, int score);
+
+    void shift(int v, int oldScore, int newScore);
+
+    int peekMaxVertex();
+
+    int getCurrentMaxScore();
+
+    int bestMatching(int minScore, IntPredicate accept);
+
+    // the visitor must not modify the structure
+    void visitDescending(int minScore, IntPredicate visitor);
+
+    // scores lie in [min cost - max neighbourhood cost, max cost]
+    static GainStructure forScores(GraphNeighbourData neighbourData) {
+        int n = neighbourData.size();
+        int degMax = getMaxWeightedDegree(neighbourData.offsets, neighbourData.targets, neighbourData.costs, n);
+        int minScore = getMinWeight(neighbourData.costs, n) - degMax;
+        int maxScore = getMaxWeight(neighbourData.costs, n);
+
+        if ((long) maxScore - minScore < MAX_BUCKET_RANGE) {
+            return new BuckerStructure(minScore, maxScore, n);
+        }
+        return new GainHeap(minScore, n);
+    }
+
+    private static int getMaxWeightedDegree(int[] offsets, int[] targets, int[] weights, int n) {
+        int max = 1;
+        for (int v = 0; v < n; v++) {
+            int sum = 0;
+            for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                sum += weights[targets[p]];
+            }
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    private static int getMaxWeight(int[] weights, int n) {
+        int max = 1;
+        for (int v = 0; v < n; v++) {
+            max = Math.max(max, weights[v]);
+        }
+        return max;
+    }
+
+    private static int getMinWeight(int[] weights, int n) {
+        int min = Integer.MAX_VALUE;
+        for (int v = 0; v < n; v++) {
+            min = Math.min(min, weights[v]);
+        }
+        return (n == 0) ? 1 : min;
+    }
+}
@@ -1,93 +1,105 @@
 package org.vspsolver.lsvsp;
 
-import java.util.ArrayDeque;
-import java.util.BitSet;
-import java.util.Random;
+import java.util.Arrays;
 
 public class HashMemory {
-    private final int n;
-    private final int maxHS;
-    private final int maxSLO;
+    public static boolean VERIFY_FINGERPRINTS = true;
 
-    private final int[] z;
-    private final HashEntry[] table;
-    private final ArrayDeque<HashEntry> lru;
+    private static final int EMPTY = Integer.MIN_VALUE;
 
-    public HashMemory(int n, int maxHS, int maxSLO, Random rnd) {
-        this.n = n;
-        this.maxHS = maxHS;
-        this.maxSLO = maxSLO;
-        this.z = new int[n];
-        for (int i = 0; i < n; i++) z[i] = 1 + rnd.nextInt(131072);
+    private final int mask;
+    private final boolean verify;
+    private final long[] keys;
+    private final long[] fingerprints;
+    private final int[] lastIter;
 
-        this.table = new HashEntry[maxHS + 1];
-        this.lru = new ArrayDeque<>();
-    }
+    private final long[] ringKeys;
+    private final long[] ringFingerprints;
+    private int ringHead;
+    private int ringTail;
+    private int ringSize;
 
-    public int touch(BitSet sepBits, int iter) {
-        long key = hash(sepBits);
-        int idx = (int) (key % (maxHS + 1));
-        int start = idx;
+    public HashMemory(int maxHS, int maxSLO) {
+        int capacity = Math.max(1, Math.min(maxHS, maxSLO));
+        int tableSize = Integer.highestOneBit(4 * capacity - 1) << 1;
+        this.mask = tableSize - 1;
+        this.verify = VERIFY_FINGERPRINTS;
+        this.keys = new long[tableSize];
+        this.fingerprints = new long[tableSize];
+        this.lastIter = new int[tableSize];
+        this.ringKeys = new long[capacity];
+        this.ringFingerprints = new long[capacity];
+        clear();
+    }
 
-        while (true) {
-            HashEntry e = table[idx];
-            if (e == null) {
-                insert(idx, key, (BitSet) sepBits.clone(), iter);
-                return -1;
-            }
-            if (e.key == key && e.sepBits.equals(sepBits)) {
-                int prev = e.lastIter;
-                e.lastIter = iter;
+    public int touch(long key, long fingerprint, int iter) {
+        int idx = slotOf(key);
+        while (lastIter[idx] != EMPTY) {
+            if (keys[idx] == key && (!verify || fingerprints[idx] == fingerprint)) {
+                int prev = lastIter[idx];
+                lastIter[idx] = iter;
                 return prev;
             }
-            idx++;
-            if (idx > maxHS) idx = 0;
-            if (idx == start) {
-                clear();
-                int newIdx = (int) (key % (maxHS + 1));
-                insert(newIdx, key, (BitSet) sepBits.clone(), iter);
-                return -1;
+            idx = (idx + 1) & mask;
+        }
+
+        if (ringSize == ringKeys.length) {
+            // the backward shift may move an entry into idx, then the first free slot is further along
+            remove(ringKeys[ringHead], ringFingerprints[ringHead]);
+            if (++ringHead == ringKeys.length) ringHead = 0;
+            ringSize--;
+            idx = slotOf(key);
+            while (lastIter[idx] != EMPTY) {
+                idx = (idx + 1) & mask;
             }
         }
+        keys[idx] = key;
+        fingerprints[idx] = fingerprint;
+        lastIter[idx] = iter;
+        ringKeys[ringTail] = key;
+        ringFingerprints[ringTail] = fingerprint;
+        if (++ringTail == ringKeys.length) ringTail = 0;
+        ringSize++;
+        return -1;
     }
 
     public void clear() {
-        for (int i = 0; i < table.length; i++) {
-            table[i] = null;
-        }
-        lru.clear();
+        Arrays.fill(lastIter, EMPTY);
+        ringHead = 0;
+        ringTail = 0;
+        ringSize = 0;
     }
 
-    private long hash(BitSet sepBits) {
-        long sum = 0;
-        for (int v = sepBits.nextSetBit(0); v >= 0; v = sepBits.nextSetBit(v + 1)) {
-            sum += z[v];
-        }
-        return sum;
+    public int size() {
+        return ringSize;
     }
 
-    private void insert(int idx, long key, BitSet sepBits, int iter) {
-        HashEntry e = new HashEntry(idx, key, sepBits, iter);
-        table[idx] = e;
-        lru.addLast(e);
-
-        while (lru.size() > maxSLO) {
-            HashEntry old = lru.removeFirst();
-            if (table[old.slot] == old) table[old.slot] = null;
-        }
+    private int slotOf(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
     }
 
-    private static class HashEntry {
-        final int slot;
-        final long key;
-        final BitSet sepBits;
-        int lastIter;
+    private void remove(long key, long fingerprint) {
+        int idx = slotOf(key);
+        while (lastIter[idx] != EMPTY && (keys[idx] != key || fingerprints[idx] != fingerprint)) {
+            idx = (idx + 1) & mask;
+        }
+        if (lastIter[idx] == EMPTY) {
+            return;
+        }
 
-        HashEntry(int slot, long key, BitSet sepBits, int lastIter) {
-            this.slot = slot;
-            this.key = key;
-            this.sepBits = sepBits;
-            this.lastIter = lastIter;
+        int hole = idx;
+        int next = (hole + 1) & mask;
+        while (lastIter[next] != EMPTY) {
+            int home = slotOf(keys[next]);
+            // the entry at next may fill the hole unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                fingerprints[hole] = fingerprints[next];
+                lastIter[hole] = lastIter[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
         }
+        lastIter[hole] = EMPTY;
     }
 }
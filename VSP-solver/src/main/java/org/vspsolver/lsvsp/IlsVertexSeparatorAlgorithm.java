@@ -5,10 +5,17 @@ import org.graph4j.vsp.VertexSeparator;
 import org.graph4j.vsp.VertexSeparatorBase;
 import org.vspsolver.util.GraphNeighbourData;
 import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.GraphReduction;
 import org.vspsolver.util.Utils;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     public long timeLimitMillis = 10_000;
@@ -17,17 +24,23 @@ public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     public static int K_MIN = 1;
     public static int K_MAX = 15;
 
+    // acceptance slack in multiples of the cheapest non-zero vertex cost, so it means the same at any cost scale
     public static int THETA = 1;
     public static int NO_IMPROVE_LIMIT = 200;
 
+    public int batchSize = 1;
+    public int numWorkers = Runtime.getRuntime().availableProcessors();
+
     private final Graph graph;
     private final int n;
     private final int maxShoreSize;
 
     private final Random random;
 
-    private final Map<Integer, int[]> neighbourhood;
+    private final GraphReduction reduction;
+    private final GraphNeighbourData neighbourData;
     private final LocalSearchState state;
+    private final int minCost;
 
     private VertexSeparator best;
     private int iterCurrent = 0;
@@ -38,101 +51,215 @@ public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
     private int bestObjective = Integer.MAX_VALUE;
 
     public IlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize) {
+        this(graph, maxShoreSize, GraphNeighbourUtil.build(graph));
+    }
+
+    public IlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData) {
         super(graph, maxShoreSize);
         this.graph = graph;
-        this.n = graph.numVertices();
-        this.maxShoreSize = maxShoreSize;
 
         this.random = new Random(seed);
 
-        GraphNeighbourData data = GraphNeighbourUtil.build(graph);
-        this.neighbourhood = data.getNeighbourhoodAsMap();
-        this.state = new LocalSearchState(graph, maxShoreSize, neighbourhood, false);
+        this.minCost = Arrays.stream(neighbourData.costs).filter(c -> c > 0).min().orElse(1);
+        this.reduction = GraphReduction.reduce(neighbourData, maxShoreSize);
+        this.neighbourData = reduction.reduced;
+        this.maxShoreSize = reduction.reducedMaxShoreSize;
+        this.n = this.neighbourData.size();
+        this.state = new LocalSearchState(graph, this.maxShoreSize, this.neighbourData, false);
 
-        this.best = new VertexSeparator(graph, maxShoreSize);
+        this.best = new VertexSeparator(graph, this.maxShoreSize);
     }
 
     @Override
     public VertexSeparator getSeparator() {
         run();
-        return new VertexSeparator(best);
+        return reduction.lift(graph, new VertexSeparator(best));
     }
 
     private void run() {
         long startTime = System.currentTimeMillis();
         long deadline = startTime + timeLimitMillis;
+        random.setSeed(seed);
 
-        VertexSeparator current = generateInitialSolution();
-        current = descentBasedSearch(current);
+        state.loadFrom(generateInitialSolution());
+        descentBasedSearch(state, random);
 
-        best = new VertexSeparator(current);
-        bestObjective = best.separator().size();
-        bestFoundAtMs = System.currentTimeMillis() - startTime;
-
-        int currentCost = current.separator().size();
+        int currentCost = state.costC;
         int bestCost = currentCost;
 
+        best = state.makeStateIntoSeparator();
+        bestObjective = bestCost;
+        bestFoundAtMs = System.currentTimeMillis() - startTime;
+
         int noImprove = 0;
 
         if (logIterations) {
-            logIteration(iterCurrent, current.separator().size(), best.separator().size(),
+            logIteration(iterCurrent, currentCost, bestCost,
                     System.currentTimeMillis() - startTime);
         }
 
+        if (batchSize > 1) {
+            runBatches(startTime, deadline);
+            return;
+        }
+
         while (System.currentTimeMillis() < deadline) {
             iterCurrent++;
 
             int k = K_MIN + random.nextInt(K_MAX - K_MIN + 1);
-            VertexSeparator candidate = perturbByFixedKTimes(current, k);
+            state.checkpoint();
+            perturbByFixedKTimes(state, k, random);
 
-            candidate = descentBasedSearch(candidate);
-            int candidateCost = candidate.separator().size();
-
-            if (accept(candidateCost, currentCost)) {
-                current = candidate;
-                currentCost = candidateCost;
-            }
+            descentBasedSearch(state, random);
+            int candidateCost = state.costC;
 
             if (candidateCost < bestCost) {
-                best = new VertexSeparator(candidate);
+                best = state.makeStateIntoSeparator();
                 bestCost = candidateCost;
                 noImprove = 0;
 
-                bestObjective = best.separator().size();
+                bestObjective = bestCost;
                 bestFoundAtMs = System.currentTimeMillis() - startTime;
             } else {
                 noImprove++;
             }
 
+            if (accept(candidateCost, currentCost)) {
+                currentCost = candidateCost;
+            } else {
+                state.rollback();
+            }
+
             if (logIterations && (iterCurrent % logEvery == 0)) {
-                logIteration(iterCurrent, current.separator().size(), best.separator().size(),
+                logIteration(iterCurrent, currentCost, bestCost,
                         System.currentTimeMillis() - startTime);
             }
         }
     }
 
+    // seeds are drawn in slot order and ties go to the lowest slot, so a run does not depend on scheduling
+    private void runBatches(long startTime, long deadline) {
+        int slots = batchSize;
+        LocalSearchState[] candidates = new LocalSearchState[slots];
+        Random[] randoms = new Random[slots];
+        long[] seeds = new long[slots];
+        int[] ks = new int[slots];
+        candidates[0] = state;
+        for (int b = 0; b < slots; b++) {
+            if (b > 0) {
+                candidates[b] = new LocalSearchState(graph, maxShoreSize, neighbourData, false);
+                candidates[b].loadFrom(state.part);
+            }
+            randoms[b] = new Random();
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(slots);
+        for (int b = 0; b < slots; b++) {
+            int slot = b;
+            tasks.add(() -> {
+                LocalSearchState candidate = candidates[slot];
+                Random rnd = randoms[slot];
+                rnd.setSeed(seeds[slot]);
+                candidate.checkpoint();
+                perturbByFixedKTimes(candidate, ks[slot], rnd);
+                descentBasedSearch(candidate, rnd);
+                return null;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(numWorkers, slots)));
+        try {
+            int currentCost = state.costC;
+            while (System.currentTimeMillis() < deadline) {
+                for (int b = 0; b < slots; b++) {
+                    ks[b] = K_MIN + random.nextInt(K_MAX - K_MIN + 1);
+                    seeds[b] = random.nextLong();
+                }
+                for (Future<Void> f : pool.invokeAll(tasks)) {
+                    f.get();
+                }
+                iterCurrent += slots;
+
+                int winner = 0;
+                for (int b = 1; b < slots; b++) {
+                    if (candidates[b].costC < candidates[winner].costC) {
+                        winner = b;
+                    }
+                }
+                LocalSearchState chosen = candidates[winner];
+                int candidateCost = chosen.costC;
+
+                if (candidateCost < bestObjective) {
+                    best = chosen.makeStateIntoSeparator();
+                    bestObjective = candidateCost;
+                    bestFoundAtMs = System.currentTimeMillis() - startTime;
+                }
+
+                boolean accepted = accept(candidateCost, currentCost);
+                if (accepted) {
+                    currentCost = candidateCost;
+                }
+                for (int b = 0; b < slots; b++) {
+                    if (accepted && b == winner) {
+                        continue;
+                    }
+                    candidates[b].rollback();
+                    if (accepted) {
+                        candidates[b].replayFrom(chosen);
+                    }
+                }
+
+                if (logIterations && (iterCurrent / slots) % logEvery == 0) {
+                    logIteration(iterCurrent, currentCost, bestObjective,
+                            System.currentTimeMillis() - startTime);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while evaluating ILS candidates", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("ILS candidate failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     private boolean accept(int candidateCost, int currentCost) {
-        return candidateCost <= currentCost + THETA;
+        return candidateCost <= currentCost + THETA * minCost;
     }
 
     private VertexSeparator generateInitialSolution() {
         VertexSeparator sep = new VertexSeparator(graph, maxShoreSize);
 
-        int[] vertices = graph.vertices();
+        int[] vertices = neighbourData.ids.clone();
         Utils.shuffle(vertices, random);
+        moveFittingTo(vertices, 0);
+        moveFittingTo(vertices, 1);
 
         sep.leftShore().add(vertices[0]);
         sep.rightShore().add(vertices[1]);
+        int loadA = neighbourData.weights[neighbourData.indexOf(vertices[0])];
+        int loadB = neighbourData.weights[neighbourData.indexOf(vertices[1])];
 
         for (int i = 2; i < vertices.length; i++) {
             int v = vertices[i];
-            if (sep.leftShore().size() < maxShoreSize && sep.rightShore().size() < maxShoreSize) {
-                if (random.nextBoolean()) sep.leftShore().add(v);
-                else sep.rightShore().add(v);
-            } else if (sep.leftShore().size() < maxShoreSize) {
+            int w = neighbourData.weights[neighbourData.indexOf(v)];
+            boolean fitsA = loadA + w <= maxShoreSize;
+            boolean fitsB = loadB + w <= maxShoreSize;
+            if (fitsA && fitsB) {
+                if (random.nextBoolean()) {
+                    sep.leftShore().add(v);
+                    loadA += w;
+                } else {
+                    sep.rightShore().add(v);
+                    loadB += w;
+                }
+            } else if (fitsA) {
                 sep.leftShore().add(v);
-            } else if (sep.rightShore().size() < maxShoreSize) {
+                loadA += w;
+            } else if (fitsB) {
                 sep.rightShore().add(v);
+                loadB += w;
             } else {
                 sep.separator().add(v);
             }
@@ -143,13 +270,30 @@ public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
         return sep;
     }
 
+    private void moveFittingTo(int[] vertices, int pos) {
+        for (int i = pos; i < vertices.length; i++) {
+            if (fitsEmptyShore(vertices[i])) {
+                int t = vertices[pos];
+                vertices[pos] = vertices[i];
+                vertices[i] = t;
+                return;
+            }
+        }
+    }
+
+    private boolean fitsEmptyShore(int v) {
+        return neighbourData.weights[neighbourData.indexOf(v)] <= maxShoreSize;
+    }
+
     private void repairABEdgesByPushingToC(VertexSeparator sep) {
         boolean changed;
         do {
             changed = false;
             int[] A = sep.leftShore().vertices();
             for (int a : A) {
-                for (int u : neighbourhood.get(a)) {
+                int i = neighbourData.indexOf(a);
+                for (int p = neighbourData.offsets[i]; p < neighbourData.offsets[i + 1]; p++) {
+                    int u = neighbourData.ids[neighbourData.targets[p]];
                     if (sep.rightShore().contains(u)) {
                         if (random.nextBoolean()) {
                             sep.leftShore().remove(a);
@@ -171,20 +315,22 @@ public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
 
     private void ensureNonEmptyShores(VertexSeparator sep) {
         if (sep.leftShore().isEmpty()) {
-            int v = Utils.pickAny(sep.separator(), random);
-            sep.separator().remove(v);
-            sep.leftShore().add(v);
+            int v = Utils.pickAny(sep.separator(), random, this::fitsEmptyShore);
+            if (v >= 0) {
+                sep.separator().remove(v);
+                sep.leftShore().add(v);
+            }
         }
         if (sep.rightShore().isEmpty()) {
-            int v = Utils.pickAny(sep.separator(), random);
-            sep.separator().remove(v);
-            sep.rightShore().add(v);
+            int v = Utils.pickAny(sep.separator(), random, this::fitsEmptyShore);
+            if (v >= 0) {
+                sep.separator().remove(v);
+                sep.rightShore().add(v);
+            }
         }
     }
 
-    private VertexSeparator descentBasedSearch(VertexSeparator start) {
-        state.loadFrom(start);
-
+    private void descentBasedSearch(LocalSearchState state, Random random) {
         while (true) {
             int vA = state.bucketA.peekMaxVertex();
             int sA = (vA >= 0) ? state.scoreToA[vA] : Integer.MIN_VALUE;
@@ -213,15 +359,11 @@ public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
             state.applyMoveFromC(bestV, bestTo, 0, random);
             state.forceNonEmptyShores(random);
         }
-
-        return state.makeStateIntoSeparator();
     }
 
-    private VertexSeparator perturbByFixedKTimes(VertexSeparator current, int k) {
-        state.loadFrom(current);
-
+    private void perturbByFixedKTimes(LocalSearchState state, int k, Random random) {
         for (int i = 0; i < k; i++) {
-            int v = Utils.pickRandomInPart(state.part, (byte)2, random);
+            int v = state.parts.pickRandom((byte)2, random);
             if (v < 0) {
                 break;
             }
@@ -236,8 +378,6 @@ public class IlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
             state.applyMoveFromC(v, to, 0, random);
             state.forceNonEmptyShores(random);
         }
-
-        return state.makeStateIntoSeparator();
     }
 
     private void logIteration(int iter,int currC,int bestC,long elapsedMs
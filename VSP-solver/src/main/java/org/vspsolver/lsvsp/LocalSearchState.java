@@ -2,57 +2,109 @@ package org.vspsolver.lsvsp;
 
 import org.graph4j.Graph;
 import org.graph4j.vsp.VertexSeparator;
-import org.vspsolver.util.Utils;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.PartIndex;
 
 import java.util.*;
+import java.util.function.IntPredicate;
 
 public class LocalSearchState {
+    public static boolean DEBUG_CHECKS = false;
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+
     public final Graph graph;
     public final int n;
     public final int maxShoreSize;
-    public final Map<Integer, int[]> neighborhood;
+    public final GraphNeighbourData neighbourData;
+    public final int[] ids;
+    public final int[] offsets;
+    public final int[] targets;
+    public final int[] weights;
+    public final int[] costs;
 
     // 0=A, 1=B, 2=C
     public final byte[] part;
+    public final PartIndex parts;
 
     public final int[] nInA;
     public final int[] nInB;
+    // the same arrays as nInA/nInB when costs are the weights
+    public final int[] costInA;
+    public final int[] costInB;
 
     public final int[] scoreToA;
     public final int[] scoreToB;
 
     public final int[][] tabuUntil;
 
-    public final BuckerStructure bucketA;
-    public final BuckerStructure bucketB;
+    // stamp[x] == epoch marks x as already collected in the current move
+    private final int[] pushed;
+    private final int[] impacted;
+    private final int[] stamp;
+    private int epoch;
+
+    public final GainStructure bucketA;
+    public final GainStructure bucketB;
+    public final IntPredicate legalToA = v -> isLegalMoveFromC(v, (byte) 0);
+    public final IntPredicate legalToB = v -> isLegalMoveFromC(v, (byte) 1);
+    private final IntPredicate fitsEmpty = v -> fitsEmptyShore(v);
 
     public int sizeA;
     public int sizeB;
     public int sizeC;
+    // sizeC is the weight of C, costC its cost (the objective)
+    public int costC;
+    public int countC;
+    public final long[] zobrist;
+    public final long[] fingerprintKeys;
+    public long hashC;
+    public long fingerprintC;
+
+    private int[] undoVertex = new int[16];
+    private byte[] undoPart = new byte[16];
+    private int undoSize;
+    private boolean undoEnabled;
+
+    private final int minWeight;
 
     private final double tabuMinFrac;
     private final double tabuMaxFrac;
     private final boolean tabuEnabled;
 
-    public LocalSearchState(Graph graph, int maxShoreSize, Map<Integer, int[]> neighborhood, boolean tabuEnabled) {
+    public LocalSearchState(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData, boolean tabuEnabled) {
         this.graph = graph;
-        this.n = graph.numVertices();
+        this.n = neighbourData.size();
         this.maxShoreSize = maxShoreSize;
-        this.neighborhood = neighborhood;
+        this.neighbourData = neighbourData;
+        this.ids = neighbourData.ids;
+        this.offsets = neighbourData.offsets;
+        this.targets = neighbourData.targets;
+        this.weights = neighbourData.weights;
+        this.costs = neighbourData.costs;
 
         this.part = new byte[n];
+        this.parts = new PartIndex(n);
         this.nInA = new int[n];
         this.nInB = new int[n];
+        this.costInA = neighbourData.costsAreWeights ? nInA : new int[n];
+        this.costInB = neighbourData.costsAreWeights ? nInB : new int[n];
         this.scoreToA = new int[n];
         this.scoreToB = new int[n];
         this.tabuUntil = new int[n][2];
+        this.pushed = new int[n];
+        this.impacted = new int[n];
+        this.stamp = new int[n];
+        this.zobrist = new long[n];
+        this.fingerprintKeys = new long[n];
+        SplittableRandom keys = new SplittableRandom(ZOBRIST_SEED);
+        for (int v = 0; v < n; v++) {
+            zobrist[v] = keys.nextLong();
+            fingerprintKeys[v] = keys.nextLong();
+        }
 
-        int degMax = getMaxDegree(neighborhood, n);
-        int minScore = 1 - degMax;
-        int maxScore = 1;
-
-        this.bucketA = new BuckerStructure(minScore, maxScore, n);
-        this.bucketB = new BuckerStructure(minScore, maxScore, n);
+        this.minWeight = getMinWeight(weights, n);
+        this.bucketA = GainStructure.forScores(neighbourData);
+        this.bucketB = GainStructure.forScores(neighbourData);
 
         if (tabuEnabled) {
             this.tabuEnabled = true;
@@ -71,29 +123,110 @@ public class LocalSearchState {
         }
 
         for (int v : sep.leftShore().vertices()) {
-            part[v] = 0;
+            part[neighbourData.indexOf(v)] = 0;
         }
         for (int v : sep.rightShore().vertices()) {
-            part[v] = 1;
+            part[neighbourData.indexOf(v)] = 1;
         }
         for (int v : sep.separator().vertices()) {
-            part[v] = 2;
+            part[neighbourData.indexOf(v)] = 2;
         }
+        reload();
+    }
 
+    public void loadFrom(byte[] source) {
+        System.arraycopy(source, 0, part, 0, n);
+        reload();
+    }
+
+    private void reload() {
+        parts.load(part);
         recomputeSizes();
         recomputeNeighborCounts();
         recomputeScoresAndBuckets();
+        undoSize = 0;
+        undoEnabled = false;
+    }
+
+    public void checkpoint() {
+        undoSize = 0;
+        undoEnabled = true;
+    }
+
+    public void rollback() {
+        int epoch = nextEpoch();
+        int numImpacted = 0;
+        for (int i = undoSize - 1; i >= 0; i--) {
+            numImpacted = reassign(undoVertex[i], undoPart[i], epoch, numImpacted);
+        }
+        undoSize = 0;
+        undoEnabled = false;
+        rescoreImpacted(numImpacted);
+    }
+
+    public void replayFrom(LocalSearchState other) {
+        int epoch = nextEpoch();
+        int numImpacted = 0;
+        for (int i = 0; i < other.undoSize; i++) {
+            int u = other.undoVertex[i];
+            numImpacted = reassign(u, other.part[u], epoch, numImpacted);
+        }
+        undoSize = 0;
+        undoEnabled = false;
+        rescoreImpacted(numImpacted);
+    }
+
+    private int reassign(int u, byte to, int epoch, int numImpacted) {
+        byte from = part[u];
+        if (from == to) {
+            return numImpacted;
+        }
+        if (from == 2) {
+            bucketA.remove(u, scoreToA[u]);
+            bucketB.remove(u, scoreToB[u]);
+        }
+        setPart(u, from, to);
+
+        if (stamp[u] != epoch) {
+            stamp[u] = epoch;
+            impacted[numImpacted++] = u;
+        }
+        for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+            int x = targets[p];
+            if (stamp[x] != epoch) {
+                stamp[x] = epoch;
+                impacted[numImpacted++] = x;
+            }
+        }
+        return numImpacted;
+    }
+
+    private void rescoreImpacted(int numImpacted) {
+        for (int i = 0; i < numImpacted; i++) {
+            int x = impacted[i];
+            if (part[x] != 2) {
+                continue;
+            }
+            if (bucketA.contains(x)) {
+                rescore(x);
+            } else {
+                scoreToA[x] = costs[x] - costInB[x];
+                scoreToB[x] = costs[x] - costInA[x];
+                bucketA.insert(x, scoreToA[x]);
+                bucketB.insert(x, scoreToB[x]);
+            }
+        }
     }
 
     public VertexSeparator makeStateIntoSeparator() {
         VertexSeparator sep = new VertexSeparator(graph, maxShoreSize);
         for (int v = 0; v < n; v++) {
             if (part[v] == 0) {
-                sep.leftShore().add(v);
+                sep.leftShore().add(ids[v]);
             } else if (part[v] == 1) {
-                sep.rightShore().add(v);
+                sep.rightShore().add(ids[v]);
             } else {
-                sep.separator().add(v);
+                sep.separator().add(ids[v]);
             }
         }
         return sep;
@@ -101,26 +234,38 @@ public class LocalSearchState {
 
     public void recomputeSizes() {
         sizeA = sizeB = sizeC = 0;
+        costC = countC = 0;
+        hashC = 0;
+        fingerprintC = 0;
         for (int v = 0; v < n; v++) {
-            if (part[v] == 0) sizeA++;
-            else if (part[v] == 1) sizeB++;
-            else sizeC++;
+            if (part[v] == 0) sizeA += weights[v];
+            else if (part[v] == 1) sizeB += weights[v];
+            else {
+                sizeC += weights[v];
+                costC += costs[v];
+                countC++;
+                toggleC(v);
+            }
         }
     }
 
     public void recomputeNeighborCounts() {
         for (int v = 0; v < n; v++) {
             int countA = 0, countB = 0;
-            for (int u : neighborhood.get(v)) {
+            for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+                int u = targets[p];
                 if (part[u] == 0) {
-                    countA++;
+                    countA += weights[u];
                 }
                 else if (part[u] == 1) {
-                    countB++;
+                    countB += weights[u];
                 }
             }
             nInA[v] = countA;
             nInB[v] = countB;
+            if (costInA != nInA) {
+                recomputeLocalCosts(v);
+            }
         }
     }
 
@@ -130,8 +275,8 @@ public class LocalSearchState {
 
         for (int v = 0; v < n; v++) {
             if (part[v] == 2) {
-                scoreToA[v] = 1 - nInB[v];
-                scoreToB[v] = 1 - nInA[v];
+                scoreToA[v] = costs[v] - costInB[v];
+                scoreToB[v] = costs[v] - costInA[v];
                 bucketA.insert(v, scoreToA[v]);
                 bucketB.insert(v, scoreToB[v]);
             } else {
@@ -145,22 +290,40 @@ public class LocalSearchState {
         if (part[v] != 2) {
             return false;
         }
-        if (toShore == 0 && sizeA >= maxShoreSize) {
-            return false;
+        boolean legal;
+        if (toShore == 0) {
+            legal = sizeA + weights[v] <= maxShoreSize && sizeB - nInB[v] > 0;
+        } else {
+            legal = sizeB + weights[v] <= maxShoreSize && sizeA - nInA[v] > 0;
         }
-        if (toShore == 1 && sizeB >= maxShoreSize) {
-            return false;
+        if (DEBUG_CHECKS) {
+            checkLegality(v, toShore, legal);
         }
+        return legal;
+    }
 
-        byte oppositeShore = (toShore == 0) ? (byte) 1 : (byte) 0;
+    public boolean isShoreFull(byte toShore) {
+        return ((toShore == 0) ? sizeA : sizeB) + minWeight > maxShoreSize;
+    }
+
+    public int pushedWeight(int v, byte toShore) {
+        return (toShore == 0) ? nInB[v] : nInA[v];
+    }
 
+    private void checkLegality(int v, byte toShore, boolean legal) {
+        byte oppositeShore = (toShore == 0) ? (byte) 1 : (byte) 0;
         int pushed = 0;
-        for (int u : neighborhood.get(v)) {
-            if (part[u] == oppositeShore) pushed++;
+        for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+            int u = targets[p];
+            if (part[u] == oppositeShore) pushed += weights[u];
         }
+        int toSize = (toShore == 0) ? sizeA : sizeB;
         int oppositeSize = (oppositeShore == 0) ? sizeA : sizeB;
-
-        return (oppositeSize - pushed) > 0;
+        boolean scanned = toSize + weights[v] <= maxShoreSize && oppositeSize - pushed > 0;
+        if (pushed != pushedWeight(v, toShore) || scanned != legal) {
+            throw new IllegalStateException("stale neighbour count for vertex " + v + ": maintained "
+                    + pushedWeight(v, toShore) + ", scanned " + pushed);
+        }
     }
 
     public int applyMoveFromC(int v, byte toShore, int itercur, Random rnd) {
@@ -169,145 +332,272 @@ public class LocalSearchState {
         }
 
         byte oppositeShore = (toShore == 0) ? (byte) 1 : (byte) 0;
+        int[] nInTo = (toShore == 0) ? nInA : nInB;
+        int[] nInOpposite = (oppositeShore == 0) ? nInA : nInB;
 
         bucketA.remove(v, scoreToA[v]);
         bucketB.remove(v, scoreToB[v]);
 
+        int wv = weights[v];
+        if (undoEnabled) logUndo(v, (byte) 2);
         part[v] = toShore;
-        sizeC--;
-        if (toShore == 0) sizeA++; else sizeB++;
-
-        int[] neighboursV = neighborhood.get(v);
-        int pushedCount = 0;
-        for (int u : neighboursV) {
-            if (part[u] == oppositeShore) {
-                pushedCount++;
-            }
-        }
-
-        int[] pushed = new int[pushedCount];
-        int idx = 0;
-        for (int u : neighboursV) {
+        parts.move(v, (byte) 2, toShore);
+        toggleC(v);
+        sizeC -= wv;
+        if (toShore == 0) sizeA += wv; else sizeB += wv;
+
+        // pushed vertices are stamped first so the impacted list below only gets vertices already in C
+        int epoch = nextEpoch();
+        int startV = offsets[v];
+        int endV = offsets[v + 1];
+        int numPushed = 0;
+        int pushedWeight = 0;
+        int pushedCost = 0;
+        for (int p = startV; p < endV; p++) {
+            int u = targets[p];
             if (part[u] == oppositeShore) {
+                if (undoEnabled) logUndo(u, oppositeShore);
                 part[u] = 2;
-                pushed[idx++] = u;
+                parts.move(u, oppositeShore, (byte) 2);
+                toggleC(u);
+                stamp[u] = epoch;
+                pushed[numPushed++] = u;
+                pushedWeight += weights[u];
+                pushedCost += costs[u];
             }
         }
-        if (pushedCount > 0) {
+        if (numPushed > 0) {
             if (oppositeShore == 0) {
-                sizeA -= pushedCount;
+                sizeA -= pushedWeight;
             } else {
-                sizeB -= pushedCount;
+                sizeB -= pushedWeight;
             }
 
-            sizeC += pushedCount;
+            sizeC += pushedWeight;
             if (tabuEnabled) {
-                markTabuForPushed(pushed, oppositeShore, itercur, rnd);
+                markTabuForPushed(numPushed, oppositeShore, itercur, rnd);
             }
         }
 
-        for (int x : neighboursV) {
-            if (toShore == 0) {
-                nInA[x]++;
-            } else {
-                nInB[x]++;
+        int numImpacted = 0;
+        for (int p = startV; p < endV; p++) {
+            int x = targets[p];
+            nInTo[x] += wv;
+            if (part[x] == 2 && stamp[x] != epoch) {
+                stamp[x] = epoch;
+                impacted[numImpacted++] = x;
             }
         }
-
-        for (int u : pushed) {
-            for (int x : neighborhood.get(u)) {
-                if (oppositeShore == 0) nInA[x]--; else nInB[x]--;
+        for (int i = 0; i < numPushed; i++) {
+            int u = pushed[i];
+            int wu = weights[u];
+            for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+                int x = targets[p];
+                nInOpposite[x] -= wu;
+                if (part[x] == 2 && stamp[x] != epoch) {
+                    stamp[x] = epoch;
+                    impacted[numImpacted++] = x;
+                }
             }
         }
 
-        recomputeLocalCounts(v);
-        for (int u : pushed) recomputeLocalCounts(u);
-
-        Set<Integer> impacted = new HashSet<>();
-        for (int x : neighboursV) {
-            if (part[x] == 2) impacted.add(x);
-        }
-        for (int u : pushed) {
-            for (int x : neighborhood.get(u)) {
-                if (part[x] == 2) impacted.add(x);
+        if (costInA != nInA) {
+            int cv = costs[v];
+            int[] costInTo = (toShore == 0) ? costInA : costInB;
+            int[] costInOpposite = (oppositeShore == 0) ? costInA : costInB;
+            for (int p = startV; p < endV; p++) {
+                costInTo[targets[p]] += cv;
+            }
+            for (int i = 0; i < numPushed; i++) {
+                int u = pushed[i];
+                int cu = costs[u];
+                for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+                    costInOpposite[targets[p]] -= cu;
+                }
             }
         }
 
-        for (int u : pushed) {
-            scoreToA[u] = 1 - nInB[u];
-            scoreToB[u] = 1 - nInA[u];
+        for (int i = 0; i < numPushed; i++) {
+            int u = pushed[i];
+            scoreToA[u] = costs[u] - costInB[u];
+            scoreToB[u] = costs[u] - costInA[u];
             bucketA.insert(u, scoreToA[u]);
             bucketB.insert(u, scoreToB[u]);
         }
 
-        for (int x : impacted) {
-            int oldA = scoreToA[x];
-            int oldB = scoreToB[x];
-            int newA = 1 - nInB[x];
-            int newB = 1 - nInA[x];
+        for (int i = 0; i < numImpacted; i++) {
+            rescore(impacted[i]);
+        }
+
+        costC += -costs[v] + pushedCost;
+        countC += numPushed - 1;
+        return -costs[v] + pushedCost;
+    }
 
-            if (newA != oldA) {
-                scoreToA[x] = newA;
-                bucketA.shift(x, oldA, newA);
+    private void placeFromC(int v, byte shore) {
+        bucketA.remove(v, scoreToA[v]);
+        bucketB.remove(v, scoreToB[v]);
+
+        int wv = weights[v];
+        if (undoEnabled) logUndo(v, (byte) 2);
+        part[v] = shore;
+        parts.move(v, (byte) 2, shore);
+        toggleC(v);
+        sizeC -= wv;
+        costC -= costs[v];
+        countC--;
+        if (shore == 0) sizeA += wv; else sizeB += wv;
+
+        int[] nInTo = (shore == 0) ? nInA : nInB;
+        int[] costInTo = (shore == 0) ? costInA : costInB;
+        for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+            nInTo[targets[p]] += wv;
+        }
+        if (costInA != nInA) {
+            for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+                costInTo[targets[p]] += costs[v];
+            }
+        }
+        for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+            int x = targets[p];
+            if (part[x] == 2) {
+                rescore(x);
             }
-            if (newB != oldB) {
-                scoreToB[x] = newB;
-                bucketB.shift(x, oldB, newB);
+        }
+    }
+
+    private void setPart(int u, byte from, byte to) {
+        int wu = weights[u];
+        int cu = costs[u];
+        if (from == 0) {
+            sizeA -= wu;
+        } else if (from == 1) {
+            sizeB -= wu;
+        } else {
+            sizeC -= wu;
+            costC -= cu;
+            countC--;
+            toggleC(u);
+        }
+        if (to == 0) {
+            sizeA += wu;
+        } else if (to == 1) {
+            sizeB += wu;
+        } else {
+            sizeC += wu;
+            costC += cu;
+            countC++;
+            toggleC(u);
+        }
+        part[u] = to;
+        parts.move(u, from, to);
+
+        int[] nInFrom = (from == 0) ? nInA : (from == 1) ? nInB : null;
+        int[] nInTo = (to == 0) ? nInA : (to == 1) ? nInB : null;
+        for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+            int x = targets[p];
+            if (nInFrom != null) nInFrom[x] -= wu;
+            if (nInTo != null) nInTo[x] += wu;
+        }
+        if (costInA != nInA) {
+            int[] costInFrom = (from == 0) ? costInA : (from == 1) ? costInB : null;
+            int[] costInTo = (to == 0) ? costInA : (to == 1) ? costInB : null;
+            for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+                int x = targets[p];
+                if (costInFrom != null) costInFrom[x] -= cu;
+                if (costInTo != null) costInTo[x] += cu;
             }
         }
+    }
+
+    private void toggleC(int v) {
+        hashC ^= zobrist[v];
+        fingerprintC ^= fingerprintKeys[v];
+    }
+
+    private void logUndo(int v, byte oldPart) {
+        if (undoSize == undoVertex.length) {
+            undoVertex = Arrays.copyOf(undoVertex, 2 * undoSize);
+            undoPart = Arrays.copyOf(undoPart, 2 * undoSize);
+        }
+        undoVertex[undoSize] = v;
+        undoPart[undoSize++] = oldPart;
+    }
 
-        return -1 + pushedCount;
+    private void rescore(int x) {
+        int oldA = scoreToA[x];
+        int oldB = scoreToB[x];
+        int newA = costs[x] - costInB[x];
+        int newB = costs[x] - costInA[x];
+
+        if (newA != oldA) {
+            scoreToA[x] = newA;
+            bucketA.shift(x, oldA, newA);
+        }
+        if (newB != oldB) {
+            scoreToB[x] = newB;
+            bucketB.shift(x, oldB, newB);
+        }
     }
 
     public void forceNonEmptyShores(Random rnd) {
         if (sizeA == 0) {
-            int v = Utils.pickRandomInPart(part, (byte) 2, rnd);
+            int v = parts.pickRandom((byte) 2, rnd, fitsEmpty);
             if (v >= 0) {
-                part[v] = 0;
-                sizeA++;
-                sizeC--;
+                placeFromC(v, (byte) 0);
             }
         }
         if (sizeB == 0) {
-            int v = Utils.pickRandomInPart(part, (byte) 2, rnd);
+            int v = parts.pickRandom((byte) 2, rnd, fitsEmpty);
             if (v >= 0) {
-                part[v] = 1;
-                sizeB++;
-                sizeC--;
+                placeFromC(v, (byte) 1);
             }
         }
     }
 
+    private boolean fitsEmptyShore(int v) {
+        return weights[v] <= maxShoreSize;
+    }
+
     public boolean isTabu(int v, byte toShore, int iterCurrent) {
         int idx = (toShore == 0) ? 0 : 1;
         return iterCurrent < tabuUntil[v][idx];
     }
 
-    private void markTabuForPushed(int[] pushed, byte originalShore, int itercur, Random rnd) {
+    private void markTabuForPushed(int numPushed, byte originalShore, int itercur, Random rnd) {
         int cSize = Math.max(1, sizeC);
         double frac = tabuMinFrac + rnd.nextDouble() * (tabuMaxFrac - tabuMinFrac);
         int gamma = Math.max(1, (int) Math.round(frac * cSize));
         int shoreIdx = (originalShore == 0) ? 0 : 1;
-        for (int u : pushed) {
-            tabuUntil[u][shoreIdx] = itercur + gamma;
+        for (int i = 0; i < numPushed; i++) {
+            tabuUntil[pushed[i]][shoreIdx] = itercur + gamma;
+        }
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
         }
+        return epoch;
     }
 
-    private void recomputeLocalCounts(int v) {
+    private void recomputeLocalCosts(int v) {
         int a = 0, b = 0;
-        for (int u : neighborhood.get(v)) {
-            if (part[u] == 0) a++;
-            else if (part[u] == 1) b++;
+        for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+            int u = targets[p];
+            if (part[u] == 0) a += costs[u];
+            else if (part[u] == 1) b += costs[u];
         }
-        nInA[v] = a;
-        nInB[v] = b;
+        costInA[v] = a;
+        costInB[v] = b;
     }
 
-    private static int getMaxDegree(Map<Integer, int[]> neighborhood, int n) {
-        int max = 1;
+    private static int getMinWeight(int[] weights, int n) {
+        int min = Integer.MAX_VALUE;
         for (int v = 0; v < n; v++) {
-            max = Math.max(max, neighborhood.get(v).length);
+            min = Math.min(min, weights[v]);
         }
-        return max;
+        return (n == 0) ? 1 : min;
     }
 }
@@ -0,0 +1,143 @@
+package org.vspsolver.lsvsp;
+
+import org.graph4j.Graph;
+import org.graph4j.vsp.VertexSeparator;
+import org.graph4j.vsp.VertexSeparatorBase;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.GraphReduction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelBlsVertexSeparatorAlgorithm extends VertexSeparatorBase {
+
+    public long timeLimitMillis = 10_000;
+    public long seed = System.nanoTime();
+    public int numWorkers = Runtime.getRuntime().availableProcessors();
+    public int restartAfterIterations = 0;
+
+    private final Graph graph;
+    private final GraphReduction reduction;
+    private final SharedIncumbent incumbent;
+
+    private List<WorkerStats> workerStats = Collections.emptyList();
+    private long bestFoundAtMs = -1;
+    private int bestObjective = Integer.MAX_VALUE;
+
+    public static final class WorkerStats {
+        public final int worker;
+        public final long seed;
+        public final int iterations;
+        public final int bestObjective;
+        public final long bestFoundAtMs;
+        public final int restarts;
+
+        WorkerStats(int worker, long seed, int iterations, int bestObjective, long bestFoundAtMs, int restarts) {
+            this.worker = worker;
+            this.seed = seed;
+            this.iterations = iterations;
+            this.bestObjective = bestObjective;
+            this.bestFoundAtMs = bestFoundAtMs;
+            this.restarts = restarts;
+        }
+
+        @Override
+        public String toString() {
+            return "worker=" + worker + " seed=" + seed + " iters=" + iterations + " best=" + bestObjective
+                    + " bestTime=" + bestFoundAtMs + "ms restarts=" + restarts;
+        }
+    }
+
+    public ParallelBlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize) {
+        this(graph, maxShoreSize, GraphNeighbourUtil.build(graph));
+    }
+
+    public ParallelBlsVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData) {
+        super(graph, maxShoreSize);
+        this.graph = graph;
+        this.reduction = GraphReduction.reduce(neighbourData, maxShoreSize);
+        this.incumbent = new SharedIncumbent();
+    }
+
+    @Override
+    public Graph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public VertexSeparator getSeparator() {
+        int workers = Math.max(1, numWorkers);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<BlsVertexSeparatorAlgorithm> searches = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            BlsVertexSeparatorAlgorithm search = new BlsVertexSeparatorAlgorithm(graph, maxShoreSize, reduction);
+            search.timeLimitMillis = timeLimitMillis;
+            search.seed = seeds.nextLong();
+            search.logIterations = false;
+            search.incumbent = incumbent;
+            search.workerId = w;
+            search.restartAfterIterations = restartAfterIterations;
+            searches.add(search);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (BlsVertexSeparatorAlgorithm search : searches) {
+                futures.add(pool.submit(search::run));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for BLS workers", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("BLS worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<WorkerStats> stats = new ArrayList<>(workers);
+        BlsVertexSeparatorAlgorithm winner = searches.get(0);
+        for (int w = 0; w < workers; w++) {
+            BlsVertexSeparatorAlgorithm search = searches.get(w);
+            stats.add(new WorkerStats(w, search.seed, search.getIterations(), search.getBestObjective(),
+                    search.getBestFoundAtMs(), search.getRestarts()));
+            if (search.getBestObjective() < winner.getBestObjective()) {
+                winner = search;
+            }
+        }
+        workerStats = Collections.unmodifiableList(stats);
+        bestObjective = winner.getBestObjective();
+        bestFoundAtMs = winner.getBestFoundAtMs();
+        return winner.bestSeparator();
+    }
+
+    public List<WorkerStats> getWorkerStats() {
+        return workerStats;
+    }
+
+    public int getIterations() {
+        int total = 0;
+        for (WorkerStats s : workerStats) {
+            total += s.iterations;
+        }
+        return total;
+    }
+
+    public int getBestObjective() {
+        return bestObjective;
+    }
+
+    public long getBestFoundAtMs() {
+        return bestFoundAtMs;
+    }
+}
@@ -0,0 +1,45 @@
+package org.vspsolver.lsvsp;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SharedIncumbent {
+    public static final class Snapshot {
+        public final int cost;
+        public final byte[] part;
+        public final int worker;
+        public final long foundAtMs;
+
+        Snapshot(int cost, byte[] part, int worker, long foundAtMs) {
+            this.cost = cost;
+            this.part = part;
+            this.worker = worker;
+            this.foundAtMs = foundAtMs;
+        }
+    }
+
+    private final AtomicReference<Snapshot> best = new AtomicReference<>();
+
+    public boolean offer(int cost, byte[] part, int worker, long foundAtMs) {
+        Snapshot current = best.get();
+        if (current != null && current.cost <= cost) {
+            return false;
+        }
+        Snapshot next = new Snapshot(cost, part.clone(), worker, foundAtMs);
+        while (!best.compareAndSet(current, next)) {
+            current = best.get();
+            if (current != null && current.cost <= cost) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Snapshot get() {
+        return best.get();
+    }
+
+    public int bestCost() {
+        Snapshot current = best.get();
+        return (current == null) ? Integer.MAX_VALUE : current.cost;
+    }
+}
@@ -6,6 +6,7 @@ import org.graph4j.vsp.VertexSeparator;
 import org.graph4j.vsp.VertexSeparatorBase;
 import org.vspsolver.util.GraphNeighbourData;
 import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.GraphReduction;
 
 import java.util.*;
 
@@ -33,6 +34,7 @@ public class EprVertexSeparatorAlgorithm extends VertexSeparatorBase {
     private final int maxShoreSize;
 
     private final Random random;
+    private final GraphReduction reduction;
     private final GraphNeighbourData neighbourhoodData;
 
     private final TabuSearch tabuSearch;
@@ -45,19 +47,24 @@ public class EprVertexSeparatorAlgorithm extends VertexSeparatorBase {
     private long bestFoundAtMs = -1;
 
     public EprVertexSeparatorAlgorithm(Graph graph, int maxShoreSize) {
+        this(graph, maxShoreSize, GraphNeighbourUtil.build(graph));
+    }
+
+    public EprVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphNeighbourData neighbourhoodData) {
         super(graph, maxShoreSize);
         this.graph = graph;
-        this.maxShoreSize = maxShoreSize;
         this.random = new Random(seed);
 
-        this.neighbourhoodData = GraphNeighbourUtil.build(graph);
+        this.reduction = GraphReduction.reduce(neighbourhoodData, maxShoreSize);
+        this.neighbourhoodData = reduction.reduced;
+        this.maxShoreSize = reduction.reducedMaxShoreSize;
 
-        this.tabuSearch = new TabuSearch(neighbourhoodData, maxShoreSize, random);
-        this.iteratedTabuSearch = new IteratedTabuSearch(neighbourhoodData, maxShoreSize, random);
-        this.pathRelinking = new PathRelinking(neighbourhoodData, maxShoreSize);
+        this.tabuSearch = new TabuSearch(this.neighbourhoodData, this.maxShoreSize, random);
+        this.iteratedTabuSearch = new IteratedTabuSearch(this.neighbourhoodData, this.maxShoreSize, random);
+        this.pathRelinking = new PathRelinking(this.neighbourhoodData, this.maxShoreSize);
         this.exteriorPathRelinking = new ExteriorPathRelinking(
-                neighbourhoodData,
-                maxShoreSize,
+                this.neighbourhoodData,
+                this.maxShoreSize,
                 random,
                 EXTERIOR_MAX_STEPS,
                 EXTERIOR_CANDIDATE_LIST_SIZE
@@ -72,7 +79,7 @@ public class EprVertexSeparatorAlgorithm extends VertexSeparatorBase {
     @Override
     public VertexSeparator getSeparator() {
         PrVspSolution best = run();
-        return toVertexSeparator(best);
+        return reduction.lift(graph, toVertexSeparator(best));
     }
 
     private PrVspSolution run() {
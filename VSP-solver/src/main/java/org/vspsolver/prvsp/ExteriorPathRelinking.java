@@ -6,133 +6,144 @@ import java.util.*;
 
 public final class ExteriorPathRelinking {
 
-    private final GraphNeighbourData neighbourhoodData;
-    private final int maxShoreSize;
     private final Random random;
 
     private final int maxSteps;
     private final int candListSize;
 
+    private final MutablePartition state;
+    private final byte[] bestPart;
+    private final int[] pool;
+    private final int[] feasiblePos;
+    private final byte[] feasibleTo;
+    private final int[] feasibleObj;
+
     public ExteriorPathRelinking(GraphNeighbourData neighbourhoodData,
                                  int maxShoreSize,
                                  Random random,
                                  int maxSteps,
                                  int candListSize) {
-        this.neighbourhoodData = neighbourhoodData;
-        this.maxShoreSize = maxShoreSize;
         this.random = random;
         this.maxSteps = Math.max(1, maxSteps);
         this.candListSize = Math.max(1, candListSize);
+
+        int n = neighbourhoodData.size();
+        this.state = new MutablePartition(neighbourhoodData, maxShoreSize);
+        this.bestPart = new byte[n];
+        this.pool = new int[n];
+        this.feasiblePos = new int[this.candListSize];
+        this.feasibleTo = new byte[this.candListSize];
+        this.feasibleObj = new int[this.candListSize];
     }
 
     public PrVspSolution bestOnExteriorPath(PrVspSolution start,
                                             PrVspSolution initiatingSolution,
                                             PrVspSolution guidingSolution) {
 
-        List<Integer> J = buildJ(initiatingSolution, guidingSolution);
-        if (J.isEmpty()) {
+        int n = pool.length;
+        int poolSize = 0;
+        for (int v = 0; v < n; v++) {
+            if ((initiatingSolution.part[v] == 2) == (guidingSolution.part[v] == 2)) {
+                pool[poolSize++] = v;
+            }
+        }
+        if (poolSize == 0) {
             return start;
         }
 
-        PrVspSolution current = start;
-        PrVspSolution best = start;
+        state.load(start);
+        byte[] part = state.part;
+        int bestObj = start.objective();
+        int bestSizeA = state.sizeA, bestSizeB = state.sizeB, bestSizeC = state.sizeC;
+        boolean improved = false;
+        boolean bestIsCurrent = false;
 
-        int steps = Math.min(maxSteps, J.size());
+        int steps = Math.min(maxSteps, poolSize);
 
         for (int step = 0; step < steps; step++) {
-            Pick pick = chooseFlipFromCandidateList(current, J);
-            if (pick.v < 0) {
+            int k = chooseFlipFromCandidateList(poolSize);
+            if (k < 0) {
                 break;
             }
 
-            current = pick.next;
-            if (current.objective() < best.objective()) {
-                best = current;
+            if (bestIsCurrent) {
+                System.arraycopy(part, 0, bestPart, 0, n);
+                bestIsCurrent = false;
             }
-
-            int last = J.size() - 1;
-            Collections.swap(J, pick.index, last);
-            J.remove(last);
-        }
-
-        return best;
-    }
-
-    private List<Integer> buildJ(PrVspSolution initiatingSolution, PrVspSolution guidingSOlution) {
-        int n = initiatingSolution.part.length;
-        List<Integer> J = new ArrayList<>(n);
-        for (int v = 0; v < n; v++) {
-            boolean bi = initiatingSolution.sepBits.get(v);
-            boolean bg = guidingSOlution.sepBits.get(v);
-            if (bi == bg) {
-                J.add(v);
+            int pos = feasiblePos[k];
+            int v = pool[pos];
+            if (feasibleTo[k] == 2) {
+                state.moveToC(v);
+            } else {
+                state.moveFromC(v, feasibleTo[k]);
+            }
+            pool[pos] = pool[--poolSize];
+
+            if (state.costC < bestObj) {
+                bestObj = state.costC;
+                bestSizeA = state.sizeA;
+                bestSizeB = state.sizeB;
+                bestSizeC = state.sizeC;
+                improved = true;
+                bestIsCurrent = true;
             }
         }
-        return J;
-    }
 
-    private Pick chooseFlipFromCandidateList(PrVspSolution current, List<Integer> J) {
-        int m = J.size();
-        if (m == 0) {
-            return new Pick(-1, -1, null);
+        if (!improved) {
+            return start;
         }
+        byte[] best = bestIsCurrent ? part : bestPart;
+        return new PrVspSolution(best.clone(), bestSizeA, bestSizeB, bestSizeC, bestObj);
+    }
 
-        int sampleSize = Math.min(candListSize, m);
-
-        int bestV = -1;
-        int bestIdx = -1;
-        PrVspSolution bestNext = null;
-        int bestObj = Integer.MAX_VALUE;
+    private int chooseFlipFromCandidateList(int poolSize) {
+        int sampleSize = Math.min(candListSize, poolSize);
 
-        int[] feasibleIdx = new int[sampleSize];
-        PrVspSolution[] feasibleNext = new PrVspSolution[sampleSize];
         int feasibleCount = 0;
+        int bestK = -1;
 
         for (int t = 0; t < sampleSize; t++) {
-            int idx = random.nextInt(m);
-            int v = J.get(idx);
-
-            PrVspSolution cand = PathRelinking.tryFlip(current, v, neighbourhoodData, maxShoreSize, random);
-            if (cand == null) {
+            int r = t + random.nextInt(poolSize - t);
+            int v = pool[r];
+            pool[r] = pool[t];
+            pool[t] = v;
+
+            byte to;
+            int obj;
+            if (state.part[v] != 2) {
+                to = 2;
+                obj = state.objectiveToC(v);
+            } else {
+                int objA = state.objectiveFromC(v, (byte)0);
+                int objB = state.objectiveFromC(v, (byte)1);
+                if (objA < objB || (objA == objB && random.nextBoolean())) {
+                    to = 0;
+                    obj = objA;
+                } else {
+                    to = 1;
+                    obj = objB;
+                }
+            }
+            if (obj == Integer.MAX_VALUE) {
                 continue;
             }
 
-            feasibleIdx[feasibleCount] = idx;
-            feasibleNext[feasibleCount] = cand;
-            feasibleCount++;
-
-            int obj = cand.objective();
-            if (obj < bestObj) {
-                bestObj = obj;
-                bestV = v;
-                bestIdx = idx;
-                bestNext = cand;
+            feasiblePos[feasibleCount] = t;
+            feasibleTo[feasibleCount] = to;
+            feasibleObj[feasibleCount] = obj;
+            if (bestK < 0 || obj < feasibleObj[bestK]) {
+                bestK = feasibleCount;
             }
+            feasibleCount++;
         }
 
         if (feasibleCount == 0) {
-            return new Pick(-1, -1, null);
+            return -1;
         }
 
         if (random.nextDouble() < 0.9) {
-            int k = random.nextInt(feasibleCount);
-            int idx = feasibleIdx[k];
-            int v = J.get(idx);
-            return new Pick(v, idx, feasibleNext[k]);
-        }
-
-        return new Pick(bestV, bestIdx, bestNext);
-    }
-
-    public static final class Pick {
-        public final int v;
-        public final int index;
-        public final PrVspSolution next;
-
-        public Pick(int v, int index, PrVspSolution next) {
-            this.v = v;
-            this.index = index;
-            this.next = next;
+            return random.nextInt(feasibleCount);
         }
+        return bestK;
     }
 }
@@ -2,81 +2,102 @@ package org.vspsolver.prvsp;
 
 import java.util.Random;
 import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.PartIndex;
 
 public class IteratedTabuSearch {
     private final GraphNeighbourData neighbourhoodData;
     private final int maxShoreSize;
     private final Random random;
     private final TabuSearch tabuSearch;
+    private final PartIndex parts;
+    private final byte[] part;
+    private int sizeA, sizeB, sizeC, costC;
 
     public IteratedTabuSearch(GraphNeighbourData neighbourhoodData, int maxShoreSize, Random random) {
         this.neighbourhoodData = neighbourhoodData;
         this.maxShoreSize = maxShoreSize;
         this.random = random;
         this.tabuSearch = new TabuSearch(neighbourhoodData, maxShoreSize, random);
+        this.parts = new PartIndex(neighbourhoodData.size());
+        this.part = new byte[neighbourhoodData.size()];
     }
 
     public PrVspSolution improve(PrVspSolution start) {
         PrVspSolution local = tabuSearch.improve(start);
-        PrVspSolution perturbed = perturb(local);
-        return tabuSearch.improve(perturbed);
+        perturb(local);
+        return tabuSearch.improve(part, sizeA, sizeB, sizeC, costC);
     }
 
-    private PrVspSolution perturb(PrVspSolution solution) {
+    private void perturb(PrVspSolution solution) {
         double rho = PrVertexSeparatorAlgorithm.RHO_MIN + random.nextDouble() *
                 (PrVertexSeparatorAlgorithm.RHO_MAX - PrVertexSeparatorAlgorithm.RHO_MIN);
         int k = Math.max(1, (int)Math.round(rho * Math.max(1, solution.sizeC)));
 
-        byte[] part = solution.part.clone();
+        int[] weights = neighbourhoodData.weights;
+        int[] costs = neighbourhoodData.costs;
+        System.arraycopy(solution.part, 0, part, 0, part.length);
+        parts.load(part);
         int sizeA = solution.sizeA, sizeB = solution.sizeB, sizeC = solution.sizeC;
+        int costC = solution.costC;
 
         for (int t = 0; t < k; t++) {
-            int v = PrVspSolutionUtil.pickRandomWithPart(part, (byte)2, random);
+            int v = parts.pickRandom((byte)2, random);
             if (v < 0) {
                 break;
             }
 
             byte to = random.nextBoolean() ? (byte)0 : (byte)1;
-            if ((to == 0 && sizeA >= maxShoreSize) || (to == 1 && sizeB >= maxShoreSize)) {
+            if (((to == 0) ? sizeA : sizeB) + weights[v] > maxShoreSize) {
                 to = (byte)(1 - to);
+                if (((to == 0) ? sizeA : sizeB) + weights[v] > maxShoreSize) {
+                    continue;
+                }
             }
 
             byte opposite = (to == 0) ? (byte)1 : (byte)0;
 
             part[v] = to;
-            sizeC--;
+            parts.move(v, (byte)2, to);
+            sizeC -= weights[v];
+            costC -= costs[v];
             if (to == 0) {
-                sizeA++;
+                sizeA += weights[v];
             } else {
-                sizeB++;
+                sizeB += weights[v];
             }
 
-            for (int u : neighbourhoodData.neighbourhoodMatrix[v]) {
+            for (int p = neighbourhoodData.offsets[v], end = neighbourhoodData.offsets[v + 1]; p < end; p++) {
+                int u = neighbourhoodData.targets[p];
                 if (part[u] == opposite) {
                     part[u] = 2;
-                    sizeC++;
+                    parts.move(u, opposite, (byte)2);
+                    sizeC += weights[u];
+                    costC += costs[u];
                     if (opposite == 0) {
-                        sizeA--;
+                        sizeA -= weights[u];
                     } else {
-                        sizeB--;
+                        sizeB -= weights[u];
                     }
                 }
             }
 
             if (sizeA == 0) {
-                int x = PrVspSolutionUtil.pickRandomWithPart(part, (byte)2, random);
-                if (x>=0) {
-                    part[x]=0; sizeA++; sizeC--;
+                int x = parts.pickRandom((byte)2, random);
+                if (x>=0 && weights[x] <= maxShoreSize) {
+                    part[x]=0; parts.move(x, (byte)2, (byte)0); sizeA += weights[x]; sizeC -= weights[x]; costC -= costs[x];
                 }
             }
             if (sizeB == 0) {
-                int x = PrVspSolutionUtil.pickRandomWithPart(part, (byte)2, random);
-                if (x>=0) {
-                    part[x]=1; sizeB++; sizeC--;
+                int x = parts.pickRandom((byte)2, random);
+                if (x>=0 && weights[x] <= maxShoreSize) {
+                    part[x]=1; parts.move(x, (byte)2, (byte)1); sizeB += weights[x]; sizeC -= weights[x]; costC -= costs[x];
                 }
             }
         }
 
-        return new PrVspSolution(part, sizeA, sizeB, sizeC);
+        this.sizeA = sizeA;
+        this.sizeB = sizeB;
+        this.sizeC = sizeC;
+        this.costC = costC;
     }
 }
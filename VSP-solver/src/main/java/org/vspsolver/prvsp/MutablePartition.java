@@ -0,0 +1,148 @@
+package org.vspsolver.prvsp;
+
+import org.vspsolver.util.GraphNeighbourData;
+
+import java.util.Arrays;
+
+final class MutablePartition {
+    private final int maxShoreSize;
+    private final int[] weights;
+    private final int[] costs;
+    private final int[] offsets;
+    private final int[] targets;
+
+    final byte[] part;
+    private final int[] nInA;
+    private final int[] nInB;
+    private final int[] costInA;
+    private final int[] costInB;
+    int sizeA, sizeB, sizeC, costC;
+
+    MutablePartition(GraphNeighbourData neighbourhoodData, int maxShoreSize) {
+        this.maxShoreSize = maxShoreSize;
+        this.weights = neighbourhoodData.weights;
+        this.costs = neighbourhoodData.costs;
+        this.offsets = neighbourhoodData.offsets;
+        this.targets = neighbourhoodData.targets;
+
+        int n = neighbourhoodData.size();
+        this.part = new byte[n];
+        this.nInA = new int[n];
+        this.nInB = new int[n];
+        this.costInA = neighbourhoodData.costsAreWeights ? nInA : new int[n];
+        this.costInB = neighbourhoodData.costsAreWeights ? nInB : new int[n];
+    }
+
+    void load(PrVspSolution solution) {
+        int n = part.length;
+        System.arraycopy(solution.part, 0, part, 0, n);
+        sizeA = solution.sizeA;
+        sizeB = solution.sizeB;
+        sizeC = solution.sizeC;
+        costC = solution.costC;
+
+        Arrays.fill(nInA, 0);
+        Arrays.fill(nInB, 0);
+        if (costInA != nInA) {
+            Arrays.fill(costInA, 0);
+            Arrays.fill(costInB, 0);
+        }
+        for (int u = 0; u < n; u++) {
+            if (part[u] == 2) {
+                continue;
+            }
+            int[] nIn = (part[u] == 0) ? nInA : nInB;
+            int[] costIn = (part[u] == 0) ? costInA : costInB;
+            int wu = weights[u];
+            int cu = costs[u];
+            for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+                nIn[targets[p]] += wu;
+                if (costIn != nIn) {
+                    costIn[targets[p]] += cu;
+                }
+            }
+        }
+    }
+
+    // MAX_VALUE if toShore overflows or either shore ends up empty
+    int objectiveFromC(int v, byte toShore) {
+        int w = weights[v];
+        int newSizeA = sizeA, newSizeB = sizeB;
+        int newCostC = costC - costs[v];
+        if (toShore == 0) {
+            if (sizeA + w > maxShoreSize) {
+                return Integer.MAX_VALUE;
+            }
+            newSizeA += w;
+            newSizeB -= nInB[v];
+            newCostC += costInB[v];
+        } else {
+            if (sizeB + w > maxShoreSize) {
+                return Integer.MAX_VALUE;
+            }
+            newSizeB += w;
+            newSizeA -= nInA[v];
+            newCostC += costInA[v];
+        }
+        return (newSizeA <= 0 || newSizeB <= 0) ? Integer.MAX_VALUE : newCostC;
+    }
+
+    int objectiveToC(int v) {
+        int shoreSize = (part[v] == 0) ? sizeA : sizeB;
+        return (shoreSize - weights[v] <= 0) ? Integer.MAX_VALUE : costC + costs[v];
+    }
+
+    void moveFromC(int v, byte toShore) {
+        byte opposite = (toShore == 0) ? (byte)1 : (byte)0;
+        moveVertex(v, (byte)2, toShore);
+        for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+            int u = targets[p];
+            if (part[u] == opposite) {
+                moveVertex(u, opposite, (byte)2);
+            }
+        }
+    }
+
+    void moveToC(int v) {
+        moveVertex(v, part[v], (byte)2);
+    }
+
+    private void moveVertex(int u, byte from, byte to) {
+        part[u] = to;
+        int wu = weights[u];
+        int cu = costs[u];
+        if (from == 2) {
+            sizeC -= wu;
+            costC -= cu;
+        } else if (from == 0) {
+            sizeA -= wu;
+        } else {
+            sizeB -= wu;
+        }
+        if (to == 2) {
+            sizeC += wu;
+            costC += cu;
+        } else if (to == 0) {
+            sizeA += wu;
+        } else {
+            sizeB += wu;
+        }
+
+        int[] nInFrom = (from == 0) ? nInA : (from == 1) ? nInB : null;
+        int[] nInTo = (to == 0) ? nInA : (to == 1) ? nInB : null;
+        int[] costInFrom = (from == 0) ? costInA : (from == 1) ? costInB : null;
+        int[] costInTo = (to == 0) ? costInA : (to == 1) ? costInB : null;
+        boolean separateCosts = costInA != nInA;
+        for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+            int x = targets[p];
+            if (nInFrom != null) {
+                nInFrom[x] -= wu;
+                if (separateCosts) costInFrom[x] -= cu;
+            }
+            if (nInTo != null) {
+                nInTo[x] += wu;
+                if (separateCosts) costInTo[x] += cu;
+            }
+        }
+    }
+}
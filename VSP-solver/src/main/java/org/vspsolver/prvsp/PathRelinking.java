@@ -2,226 +2,96 @@ package org.vspsolver.prvsp;
 
 import org.vspsolver.util.GraphNeighbourData;
 
-import java.util.*;
-
 public class PathRelinking {
-    private final GraphNeighbourData neighbourhoodData;
-    private final int maxShoreSize;
+    private final MutablePartition state;
+    private final byte[] bestPart;
+    // vertices of the symmetric difference not yet moved, in increasing order
+    private final int[] remaining;
 
     public PathRelinking(GraphNeighbourData neighbourhoodData, int maxShoreSize) {
-        this.neighbourhoodData = neighbourhoodData;
-        this.maxShoreSize = maxShoreSize;
+        int n = neighbourhoodData.size();
+        this.state = new MutablePartition(neighbourhoodData, maxShoreSize);
+        this.bestPart = new byte[n];
+        this.remaining = new int[n];
     }
 
     public PrVspSolution bestOnPath(PrVspSolution initialSolution, PrVspSolution guidingSolution) {
-        BitSet symmetricDifference = (BitSet) initialSolution.sepBits.clone();
-        symmetricDifference.xor(guidingSolution.sepBits);
-        int symmetricDifferenceCard = symmetricDifference.cardinality();
+        byte[] guide = guidingSolution.part;
+        int n = bestPart.length;
+        int numRemaining = 0;
+        for (int v = 0; v < n; v++) {
+            if ((initialSolution.part[v] == 2) != (guide[v] == 2)) {
+                remaining[numRemaining++] = v;
+            }
+        }
+        int symmetricDifferenceCard = numRemaining;
         if (symmetricDifferenceCard <= 1) {
             return initialSolution;
         }
 
-        PrVspSolution current = initialSolution;
-        PrVspSolution best = initialSolution;
+        state.load(initialSolution);
+        byte[] part = state.part;
+        int bestObj = initialSolution.objective();
+        int bestSizeA = state.sizeA, bestSizeB = state.sizeB, bestSizeC = state.sizeC;
+        // the best is only copied out of part when a move is about to leave it
+        boolean improved = false;
+        boolean bestIsCurrent = false;
 
         for (int step = 1; step < symmetricDifferenceCard; step++) {
-            int bestVm = -1;
-            PrVspSolution bestNext = null;
-
-            for (int vm = symmetricDifference.nextSetBit(0); vm >= 0; vm = symmetricDifference.nextSetBit(vm + 1)) {
-                PrVspSolution candidate = applyOp(current, guidingSolution, vm);
-                if (candidate == null) {
-                    continue;
-                }
-
-                if (bestNext == null || candidate.objective() < bestNext.objective()) {
-                    bestNext = candidate;
-                    bestVm = vm;
+            int bestIndex = -1;
+            int bestNextObj = Integer.MAX_VALUE;
+
+            for (int i = 0; i < numRemaining; i++) {
+                int obj = evalOp(guide, remaining[i]);
+                if (obj != Integer.MAX_VALUE && (bestIndex < 0 || obj < bestNextObj)) {
+                    bestNextObj = obj;
+                    bestIndex = i;
                 }
             }
 
-            if (bestNext == null) {
+            if (bestIndex < 0) {
                 break;
             }
 
-            current = bestNext;
-            symmetricDifference.clear(bestVm);
-
-            if (current.objective() < best.objective()) {
-                best = current;
-            }
-        }
-
-        return best;
-    }
-
-    private PrVspSolution applyOp(PrVspSolution currentSolution, PrVspSolution guidingSolution, int vm) {
-        boolean inCurrentSolution = currentSolution.sepBits.get(vm);
-        boolean inGuidingSolution = guidingSolution.sepBits.get(vm);
-
-        byte[] part = currentSolution.part.clone();
-        int sizeA = currentSolution.sizeA, sizeB = currentSolution.sizeB, sizeC = currentSolution.sizeC;
-
-        if (inCurrentSolution && !inGuidingSolution) {
-            byte to = guidingSolution.part[vm];
-            if (to == 0 && sizeA >= maxShoreSize) {
-                return null;
-            }
-            if (to == 1 && sizeB >= maxShoreSize) {
-                return null;
+            if (bestIsCurrent) {
+                System.arraycopy(part, 0, bestPart, 0, n);
+                bestIsCurrent = false;
             }
-
-            part[vm] = to;
-            sizeC--;
-            if (to == 0) {
-                sizeA++;
+            int vm = remaining[bestIndex];
+            if (part[vm] == 2) {
+                state.moveFromC(vm, guide[vm]);
             } else {
-                sizeB++;
-            }
-
-            byte opposite = (to == 0) ? (byte)1 : (byte)0;
-            for (int u : neighbourhoodData.neighbourhoodMatrix[vm]) {
-                if (part[u] == opposite) {
-                    part[u] = 2;
-                    sizeC++;
-                    if (opposite == 0) {
-                        sizeA--;
-                    } else {
-                        sizeB--;
-                    }
-                }
-            }
-
-            if (sizeA <= 0 || sizeB <= 0) {
-                return null;
-            }
-        } else if (!inCurrentSolution && inGuidingSolution) {
-            byte from = part[vm];
-            if (from == 2) {
-                return null;
-            }
-            part[vm] = 2;
-            sizeC++;
-            if (from == 0) {
-                sizeA--;
-            } else {
-                sizeB--;
-            }
-            if (sizeA <= 0 || sizeB <= 0) {
-                return null;
-            }
-
-        } else {
-            return null;
-        }
-
-        return new PrVspSolution(part, sizeA, sizeB, sizeC);
-    }
-
-    public static PrVspSolution tryFlip(PrVspSolution solution, int v,
-                                        GraphNeighbourData neighbourhoodData, int maxShoreSize, Random random) {
-        byte pv = solution.part[v];
-
-        if (pv == 0 || pv == 1) {
-            return moveShoreToC(solution, v);
-        } else if (pv == 2) {
-            PrVspSolution toA = moveCToShoreWithRepair(solution, v, (byte) 0, neighbourhoodData, maxShoreSize);
-            PrVspSolution toB = moveCToShoreWithRepair(solution, v, (byte) 1, neighbourhoodData, maxShoreSize);
-
-            if (toA == null) {
-                return toB;
-            }
-            if (toB == null) {
-                return toA;
+                state.moveToC(vm);
             }
+            System.arraycopy(remaining, bestIndex + 1, remaining, bestIndex, numRemaining - bestIndex - 1);
+            numRemaining--;
 
-            if (toA.objective() < toB.objective()) {
-                return toA;
-            }
-            if (toB.objective() < toA.objective()) {
-                return toB;
+            if (state.costC < bestObj) {
+                bestObj = state.costC;
+                bestSizeA = state.sizeA;
+                bestSizeB = state.sizeB;
+                bestSizeC = state.sizeC;
+                improved = true;
+                bestIsCurrent = true;
             }
-            return random.nextBoolean() ? toA : toB;
-        }
-
-        return null;
-    }
-
-    private static PrVspSolution moveShoreToC(PrVspSolution solution, int v) {
-        byte[] part = solution.part.clone();
-        int sizeA = solution.sizeA;
-        int sizeB = solution.sizeB;
-        int sizeC = solution.sizeC;
-
-        byte from = part[v];
-        if (from == 2) {
-            return solution;
-        }
-
-        if (from == 0 && sizeA <= 1) {
-            return null;
-        }
-        if (from == 1 && sizeB <= 1) {
-            return null;
         }
 
-        part[v] = 2;
-        sizeC++;
-        if (from == 0) {
-            sizeA--;
-        } else {
-            sizeB--;
+        if (!improved) {
+            return initialSolution;
         }
-
-        return new PrVspSolution(part, sizeA, sizeB, sizeC);
+        byte[] best = bestIsCurrent ? part : bestPart;
+        return new PrVspSolution(best.clone(), bestSizeA, bestSizeB, bestSizeC, bestObj);
     }
 
-    private static PrVspSolution moveCToShoreWithRepair(PrVspSolution solution, int v, byte toShore,
-                                                        GraphNeighbourData neighbourhoodData, int maxShoreSize) {
-        byte[] part = solution.part.clone();
-        int sizeA = solution.sizeA;
-        int sizeB = solution.sizeB;
-        int sizeC = solution.sizeC;
+    private int evalOp(byte[] guide, int vm) {
+        boolean inCurrentSolution = state.part[vm] == 2;
+        boolean inGuidingSolution = guide[vm] == 2;
 
-        if (part[v] != 2) {
-            return null;
-        }
-
-        if (toShore == 0 && sizeA >= maxShoreSize) {
-            return null;
-        }
-        if (toShore == 1 && sizeB >= maxShoreSize) {
-            return null;
-        }
-
-        part[v] = toShore;
-        sizeC--;
-        if (toShore == 0) {
-            sizeA++;
-        } else {
-            sizeB++;
-        }
-
-        byte opposite = (toShore == 0) ? (byte) 1 : (byte) 0;
-        for (int u : neighbourhoodData.neighbourhoodMatrix[v]) {
-            if (part[u] == opposite) {
-                part[u] = 2;
-                sizeC++;
-                if (opposite == 0) {
-                    sizeA--;
-                } else {
-                    sizeB--;
-                }
-            }
-        }
-
-        if (sizeA <= 0 || sizeB <= 0) {
-            return null;
-        }
-        if (sizeA > maxShoreSize || sizeB > maxShoreSize) {
-            return null;
+        if (inCurrentSolution && !inGuidingSolution) {
+            return state.objectiveFromC(vm, guide[vm]);
+        } else if (!inCurrentSolution && inGuidingSolution) {
+            return state.objectiveToC(vm);
         }
-
-        return new PrVspSolution(part, sizeA, sizeB, sizeC);
+        return Integer.MAX_VALUE;
     }
 }
@@ -6,6 +6,7 @@ import org.graph4j.util.VertexSet;
 import org.graph4j.vsp.VertexSeparatorBase;
 import org.vspsolver.util.GraphNeighbourData;
 import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.GraphReduction;
 
 import java.util.*;
 
@@ -25,6 +26,7 @@ public class PrVertexSeparatorAlgorithm extends VertexSeparatorBase {
     private final int maxShoreSize;
 
     private final Random random;
+    private final GraphReduction reduction;
     private final GraphNeighbourData neighbourhoodData;
 
     private final TabuSearch tabuSearch;
@@ -36,15 +38,20 @@ public class PrVertexSeparatorAlgorithm extends VertexSeparatorBase {
     private long bestFoundAtMs = -1;
 
     public PrVertexSeparatorAlgorithm(Graph graph, int maxShoreSize) {
+        this(graph, maxShoreSize, GraphNeighbourUtil.build(graph));
+    }
+
+    public PrVertexSeparatorAlgorithm(Graph graph, int maxShoreSize, GraphNeighbourData neighbourhoodData) {
         super(graph, maxShoreSize);
         this.graph = graph;
-        this.maxShoreSize = maxShoreSize;
         this.random = new Random(seed);
 
-        this.neighbourhoodData = GraphNeighbourUtil.build(graph);
-        this.tabuSearch = new TabuSearch(neighbourhoodData, maxShoreSize, random);
-        this.iteratedTabuSearch = new IteratedTabuSearch(neighbourhoodData, maxShoreSize, random);
-        this.pathRelinking = new PathRelinking(neighbourhoodData, maxShoreSize);
+        this.reduction = GraphReduction.reduce(neighbourhoodData, maxShoreSize);
+        this.neighbourhoodData = reduction.reduced;
+        this.maxShoreSize = reduction.reducedMaxShoreSize;
+        this.tabuSearch = new TabuSearch(this.neighbourhoodData, this.maxShoreSize, random);
+        this.iteratedTabuSearch = new IteratedTabuSearch(this.neighbourhoodData, this.maxShoreSize, random);
+        this.pathRelinking = new PathRelinking(this.neighbourhoodData, this.maxShoreSize);
     }
 
     @Override
@@ -55,7 +62,7 @@ public class PrVertexSeparatorAlgorithm extends VertexSeparatorBase {
     @Override
     public VertexSeparator getSeparator() {
         PrVspSolution best = run();
-        return toVertexSeparator(best);
+        return reduction.lift(graph, toVertexSeparator(best));
     }
 
     private PrVspSolution run() {
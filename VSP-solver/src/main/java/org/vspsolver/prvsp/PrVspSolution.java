@@ -5,18 +5,20 @@ import java.util.BitSet;
 public class PrVspSolution {
     public final byte[] part;
     public final int sizeA, sizeB, sizeC;
+    public final int costC;
     public final BitSet sepBits;
 
-    public PrVspSolution(byte[] part, int sizeA, int sizeB, int sizeC) {
+    public PrVspSolution(byte[] part, int sizeA, int sizeB, int sizeC, int costC) {
         this.part = part;
         this.sizeA = sizeA;
         this.sizeB = sizeB;
         this.sizeC = sizeC;
+        this.costC = costC;
         this.sepBits = buildSepBits(part);
     }
 
     public int objective() {
-        return sizeC;
+        return costC;
     }
 
     public static BitSet buildSepBits(byte[] part) {
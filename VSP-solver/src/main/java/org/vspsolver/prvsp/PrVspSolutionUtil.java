@@ -1,23 +1,27 @@
 package org.vspsolver.prvsp;
 
 import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.PartIndex;
 
 import java.util.Random;
 
 public class PrVspSolutionUtil {
     public static PrVspSolution randomInitial(GraphNeighbourData neighbourhoodData, int maxShoreSize, Random random) {
         int size = neighbourhoodData.size();
+        int[] weights = neighbourhoodData.weights;
+        int[] costs = neighbourhoodData.costs;
         byte[] part = new byte[size];
         int sizeA = 0;
         int sizeB = 0;
         int sizeC = 0;
+        int costC = 0;
 
         for (int i = 0; i < size; i++) {
             part[i] = random.nextBoolean() ? (byte)0 : (byte)1;
             if (part[i] == 0) {
-                sizeA++;
+                sizeA += weights[i];
             } else {
-                sizeB++;
+                sizeB += weights[i];
             }
         }
 
@@ -28,26 +32,27 @@ public class PrVspSolutionUtil {
                 if (part[i] == 2) {
                     continue;
                 }
-                for (int j : neighbourhoodData.neighbourhoodMatrix[i]) {
+                for (int p = neighbourhoodData.offsets[i], end = neighbourhoodData.offsets[i + 1]; p < end; p++) {
+                    int j = neighbourhoodData.targets[p];
                     if (part[i] == 0 && part[j] == 1) {
                         int pick = random.nextBoolean() ? i : j;
                         if (part[pick] == 0) {
-                            sizeA--;
+                            sizeA -= weights[pick];
                         } else {
-                            sizeB--;
+                            sizeB -= weights[pick];
                         }
-                        part[pick] = 2; sizeC++;
+                        part[pick] = 2; sizeC += weights[pick]; costC += costs[pick];
                         changed = true;
                         break;
                     }
                     if (part[i] == 1 && part[j] == 0) {
                         int pick = random.nextBoolean() ? i : j;
                         if (part[pick] == 0) {
-                            sizeA--;
+                            sizeA -= weights[pick];
                         } else {
-                            sizeB--;
+                            sizeB -= weights[pick];
                         }
-                        part[pick] = 2; sizeC++;
+                        part[pick] = 2; sizeC += weights[pick]; costC += costs[pick];
                         changed = true;
                         break;
                     }
@@ -55,37 +60,26 @@ public class PrVspSolutionUtil {
             }
         } while (changed);
 
+        PartIndex parts = new PartIndex(size);
+        parts.load(part);
         while (sizeA > maxShoreSize) {
-            int v = pickRandomWithPart(part, (byte)0, random);
-            part[v] = 2; sizeA--; sizeC++;
+            int v = parts.pickRandom((byte)0, random);
+            part[v] = 2; parts.move(v, (byte)0, (byte)2); sizeA -= weights[v]; sizeC += weights[v]; costC += costs[v];
         }
         while (sizeB > maxShoreSize) {
-            int v = pickRandomWithPart(part, (byte)1, random);
-            part[v] = 2; sizeB--; sizeC++;
+            int v = parts.pickRandom((byte)1, random);
+            part[v] = 2; parts.move(v, (byte)1, (byte)2); sizeB -= weights[v]; sizeC += weights[v]; costC += costs[v];
         }
 
         if (sizeA == 0) {
-            int v = pickRandomWithPart(part, (byte)2, random); part[v]=0; sizeA++; sizeC--;
+            int v = parts.pickRandom((byte)2, random); part[v]=0; parts.move(v, (byte)2, (byte)0);
+            sizeA += weights[v]; sizeC -= weights[v]; costC -= costs[v];
         }
         if (sizeB == 0) {
-            int v = pickRandomWithPart(part, (byte)2, random); part[v]=1; sizeB++; sizeC--;
+            int v = parts.pickRandom((byte)2, random); part[v]=1; parts.move(v, (byte)2, (byte)1);
+            sizeB += weights[v]; sizeC -= weights[v]; costC -= costs[v];
         }
 
-        return new PrVspSolution(part, sizeA, sizeB, sizeC);
-    }
-
-    public static int pickRandomWithPart(byte[] part, byte p, Random rnd) {
-        for (int tries = 0; tries < 10_000; tries++) {
-            int i = rnd.nextInt(part.length);
-            if (part[i] == p) {
-                return i;
-            }
-        }
-        for (int i = 0; i < part.length; i++) {
-            if (part[i] == p) {
-                return i;
-            }
-        }
-        return -1;
+        return new PrVspSolution(part, sizeA, sizeB, sizeC, costC);
     }
 }
@@ -1,13 +0,0 @@
-package org.vspsolver.prvsp;
-
-public class TabuResult {
-    public final int sizeA;
-    public final int sizeB;
-    public final int sizeC;
-
-    public TabuResult(int sizeA, int sizeB, int sizeC) {
-        this.sizeA = sizeA;
-        this.sizeB = sizeB;
-        this.sizeC = sizeC;
-    }
-}
@@ -1,31 +1,115 @@
 package org.vspsolver.prvsp;
 
 import java.util.*;
+import java.util.function.IntPredicate;
+import org.vspsolver.lsvsp.GainStructure;
 import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.PartIndex;
 
 public class TabuSearch {
     private final GraphNeighbourData neighbourhoodData;
     private final int maxShoreSize;
     private final Random random;
+    private final int[] weights;
+    private final int[] costs;
+    private final long totalWeight;
+    private final long totalCost;
+    private int[] swapped = new int[1];
+    private final PartIndex parts;
+
+    private final byte[] part;
+    private final byte[] bestPart;
+    // tabuUntil[2 * v + shore]; instead of clearing it, a new call starts iter past every earlier entry
+    private final int[] tabuUntil;
+    private int tabuHorizon;
+    private int iter;
+    private int sizeA, sizeB, sizeC, costC;
+    private int bestObj;
+    private int bestSizeA, bestSizeB, bestSizeC;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int minWeight;
+    private final int[] nInA;
+    private final int[] nInB;
+    private final int[] costInA;
+    private final int[] costInB;
+    private final int[] gainToA;
+    private final int[] gainToB;
+    private final GainStructure bucketA;
+    private final GainStructure bucketB;
+
+    private final IntPredicate scanVisitor;
+    private byte scanTo;
+    private int scanPenaltyFloor;
+    private int bestV;
+    private byte bestTo;
+    private boolean bestSwap;
+    private int bestNewObj;
 
     public TabuSearch(GraphNeighbourData neighbourhoodData, int maxShoreSize, Random random) {
         this.neighbourhoodData = neighbourhoodData;
         this.maxShoreSize = maxShoreSize;
         this.random = random;
+        this.weights = neighbourhoodData.weights;
+        this.costs = neighbourhoodData.costs;
+        this.totalWeight = Math.max(1, neighbourhoodData.totalWeight());
+        this.totalCost = neighbourhoodData.totalCost();
+        this.parts = new PartIndex(neighbourhoodData.size());
+
+        int n = neighbourhoodData.size();
+        this.offsets = neighbourhoodData.offsets;
+        this.targets = neighbourhoodData.targets;
+        int lightest = Integer.MAX_VALUE;
+        for (int v = 0; v < n; v++) {
+            lightest = Math.min(lightest, weights[v]);
+        }
+        this.minWeight = (n == 0) ? 1 : lightest;
+        this.nInA = new int[n];
+        this.nInB = new int[n];
+        this.costInA = neighbourhoodData.costsAreWeights ? nInA : new int[n];
+        this.costInB = neighbourhoodData.costsAreWeights ? nInB : new int[n];
+        this.gainToA = new int[n];
+        this.gainToB = new int[n];
+        this.bucketA = GainStructure.forScores(neighbourhoodData);
+        this.bucketB = GainStructure.forScores(neighbourhoodData);
+        this.part = new byte[n];
+        this.bestPart = new byte[n];
+        this.tabuUntil = new int[2 * n];
+        this.scanVisitor = this::scanCandidate;
     }
 
     public PrVspSolution improve(PrVspSolution start) {
-        int n = neighbourhoodData.size();
-        byte[] part = start.part.clone();
-        int sizeA = start.sizeA;
-        int sizeB = start.sizeB;
-        int sizeC = start.sizeC;
+        boolean improved = search(start.part, start.sizeA, start.sizeB, start.sizeC, start.costC);
+        return improved ? bestSolution() : start;
+    }
+
+    public PrVspSolution improve(byte[] startPart, int startSizeA, int startSizeB, int startSizeC, int startCostC) {
+        boolean improved = search(startPart, startSizeA, startSizeB, startSizeC, startCostC);
+        return improved ? bestSolution()
+                : new PrVspSolution(startPart.clone(), startSizeA, startSizeB, startSizeC, startCostC);
+    }
 
-        int[][] tabuUntil = new int[n][2];
-        int iter = 0;
+    private boolean search(byte[] startPart, int startSizeA, int startSizeB, int startSizeC, int startCostC) {
+        int n = part.length;
+        System.arraycopy(startPart, 0, part, 0, n);
+        parts.load(part);
+        loadCounts();
+        sizeA = startSizeA;
+        sizeB = startSizeB;
+        sizeC = startSizeC;
+        costC = startCostC;
+        iter = tabuHorizon;
+        if (iter > Integer.MAX_VALUE / 2) {
+            Arrays.fill(tabuUntil, 0);
+            tabuHorizon = 0;
+            iter = 0;
+        }
 
-        PrVspSolution best = new PrVspSolution(part.clone(), sizeA, sizeB, sizeC);
-        int bestObj = best.objective();
+        bestObj = costC;
+        int bestSizeA = sizeA, bestSizeB = sizeB, bestSizeC = sizeC;
+        boolean improved = false;
+        boolean bestIsCurrent = false;
 
         int cutoff = Math.max(1, (int)Math.round(PrVertexSeparatorAlgorithm.BETA * Math.max(1, sizeC)));
         int noImprove = 0;
@@ -40,176 +124,264 @@ public class TabuSearch {
                 forcedShore = 1;
             }
 
-            OneSwapMove bestOneSwapMove = findBestMove(part, sizeA, sizeB, sizeC, tabuUntil, iter, bestObj, forcedShore);
-            if (bestOneSwapMove == null) {
+            if (!findBestMove(forcedShore)) {
                 break;
             }
 
-            TabuResult tabuResult = applyMove(part, sizeA, sizeB, sizeC, tabuUntil, iter, bestOneSwapMove);
-            sizeA = tabuResult.sizeA;
-            sizeB = tabuResult.sizeB;
-            sizeC = tabuResult.sizeC;
-
-            int curObj = sizeC;
-            if (curObj < bestObj) {
-                bestObj = curObj;
-                best = new PrVspSolution(part.clone(), sizeA, sizeB, sizeC);
+            if (bestIsCurrent) {
+                System.arraycopy(part, 0, bestPart, 0, n);
+                bestIsCurrent = false;
+            }
+            applyMove();
+
+            if (costC < bestObj) {
+                bestObj = costC;
+                bestSizeA = sizeA;
+                bestSizeB = sizeB;
+                bestSizeC = sizeC;
+                improved = true;
+                bestIsCurrent = true;
                 noImprove = 0;
             } else {
                 noImprove++;
             }
         }
 
-        return best;
+        if (bestIsCurrent) {
+            System.arraycopy(part, 0, bestPart, 0, n);
+        }
+        this.bestSizeA = bestSizeA;
+        this.bestSizeB = bestSizeB;
+        this.bestSizeC = bestSizeC;
+        return improved;
     }
 
-    private OneSwapMove findBestMove(byte[] part, int sizeA, int sizeB, int sizeC,
-                                     int[][] tabuUntil, int iter, int bestObj, byte forcedShore) {
-        int n = part.length;
-
-        OneSwapMove best = null;
+    private PrVspSolution bestSolution() {
+        return new PrVspSolution(bestPart.clone(), bestSizeA, bestSizeB, bestSizeC, bestObj);
+    }
 
-        for (int v = 0; v < n; v++) {
-            if (part[v] != 2) {
+    private void loadCounts() {
+        int n = part.length;
+        Arrays.fill(nInA, 0);
+        Arrays.fill(nInB, 0);
+        if (costInA != nInA) {
+            Arrays.fill(costInA, 0);
+            Arrays.fill(costInB, 0);
+        }
+        for (int u = 0; u < n; u++) {
+            if (part[u] == 2) {
                 continue;
             }
-
-            if (forcedShore == -1 || forcedShore == 0) {
-                OneSwapMove m = evalMove(part, sizeA, sizeB, sizeC, tabuUntil, iter, bestObj, v, (byte)0);
-                best = better(best, m);
-            }
-            if (forcedShore == -1 || forcedShore == 1) {
-                OneSwapMove m = evalMove(part, sizeA, sizeB, sizeC, tabuUntil, iter, bestObj, v, (byte)1);
-                best = better(best, m);
+            int[] nIn = (part[u] == 0) ? nInA : nInB;
+            int[] costIn = (part[u] == 0) ? costInA : costInB;
+            int wu = weights[u];
+            int cu = costs[u];
+            for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+                nIn[targets[p]] += wu;
+                if (costIn != nIn) {
+                    costIn[targets[p]] += cu;
+                }
             }
         }
 
-        return best;
+        bucketA.clear();
+        bucketB.clear();
+        for (int i = 0, size = parts.size((byte)2); i < size; i++) {
+            int v = parts.get((byte)2, i);
+            gainToA[v] = costs[v] - costInB[v];
+            gainToB[v] = costs[v] - costInA[v];
+            bucketA.insert(v, gainToA[v]);
+            bucketB.insert(v, gainToB[v]);
+        }
     }
 
-    private OneSwapMove better(OneSwapMove a, OneSwapMove b) {
-        if (b == null) {
-            return a;
-        }
-        if (a == null) {
-            return b;
-        }
-        if (b.newObj < a.newObj) {
-            return b;
+    // the new objective is costC - gain, plus the estimated cost of a swap when the shore is full
+    private boolean findBestMove(byte forcedShore) {
+        bestV = -1;
+
+        if (forcedShore == -1 || forcedShore == 0) {
+            scanTo = 0;
+            scanPenaltyFloor = swapPenalty(sizeA + minWeight - maxShoreSize);
+            bucketA.visitDescending(Integer.MIN_VALUE, scanVisitor);
         }
-        if (b.newObj > a.newObj) {
-            return a;
+        if (forcedShore == -1 || forcedShore == 1) {
+            scanTo = 1;
+            scanPenaltyFloor = swapPenalty(sizeB + minWeight - maxShoreSize);
+            bucketB.visitDescending(Integer.MIN_VALUE, scanVisitor);
         }
-        return random.nextBoolean() ? a : b;
+        return bestV >= 0;
     }
 
-    private OneSwapMove evalMove(byte[] part, int sizeA, int sizeB, int sizeC,
-                                 int[][] tabuUntil, int iter, int bestObj,
-                                 int v, byte toShore) {
-        boolean swap = (toShore == 0 && sizeA == maxShoreSize) || (toShore == 1 && sizeB == maxShoreSize);
-        if (!swap) {
-            if ((toShore == 0 && sizeA >= maxShoreSize) || (toShore == 1 && sizeB >= maxShoreSize)) {
-                return null;
-            }
+    // gains come in non-increasing order, so the scan stops once no candidate can reach the best found
+    private boolean scanCandidate(int v) {
+        byte toShore = scanTo;
+        int gain = (toShore == 0) ? gainToA[v] : gainToB[v];
+        if (bestV >= 0 && costC - gain + scanPenaltyFloor > bestNewObj) {
+            return false;
         }
 
-        byte opp = (toShore == 0) ? (byte)1 : (byte)0;
-        int pushed = 0;
-        for (int u : neighbourhoodData.neighbourhoodMatrix[v]) {
-            if (part[u] == opp) pushed++;
+        int w = weights[v];
+        if (w > maxShoreSize) {
+            return true;
         }
+        int overflow = ((toShore == 0) ? sizeA : sizeB) + w - maxShoreSize;
+        boolean swap = overflow > 0;
+        int pushed = (toShore == 0) ? nInB[v] : nInA[v];
 
         int newSizeA = sizeA;
         int newSizeB = sizeB;
-        int newSizeC = sizeC;
-
-        newSizeC -= 1;
+        int newCostC = costC - gain;
         if (toShore == 0) {
-            newSizeA += 1;
+            newSizeA += w;
+            newSizeB -= pushed;
         } else {
-            newSizeB += 1;
+            newSizeB += w;
+            newSizeA -= pushed;
         }
-
         if (swap) {
-            newSizeC += 1;
+            newCostC += swapPenalty(overflow);
             if (toShore == 0) {
-                newSizeA -= 1;
+                newSizeA -= overflow;
             } else {
-                newSizeB -= 1;
+                newSizeB -= overflow;
             }
         }
 
-        newSizeC += pushed;
-        if (opp == 0) {
-            newSizeA -= pushed;
-        } else {
-            newSizeB -= pushed;
-        }
-
         if (newSizeA <= 0 || newSizeB <= 0) {
-            return null;
+            return true;
         }
         if (newSizeA > maxShoreSize || newSizeB > maxShoreSize) {
-            return null;
+            return true;
         }
 
-        boolean tabu = iter < tabuUntil[v][toShore];
-        boolean aspiration = newSizeC < bestObj;
+        boolean tabu = iter < tabuUntil[2 * v + toShore];
+        boolean aspiration = newCostC < bestObj;
         if (tabu && !aspiration) {
-            return null;
+            return true;
         }
 
-        return new OneSwapMove(v, toShore, swap, newSizeC);
+        if (bestV < 0 || newCostC < bestNewObj || (newCostC == bestNewObj && random.nextBoolean())) {
+            bestV = v;
+            bestTo = toShore;
+            bestSwap = swap;
+            bestNewObj = newCostC;
+        }
+        return true;
+    }
+
+    private int swapPenalty(int overflow) {
+        return (overflow > 0) ? (int) (overflow * totalCost / totalWeight) : 0;
     }
 
-    private TabuResult applyMove(byte[] part, int sizeA, int sizeB, int sizeC,
-                                 int[][] tabuUntil, int iter, OneSwapMove oneSwapMove) {
-        int v = oneSwapMove.v;
-        byte to = oneSwapMove.toShore;
+    private void applyMove() {
+        int v = bestV;
+        byte to = bestTo;
         byte opp = (to == 0) ? (byte)1 : (byte)0;
 
-        int swappedVertex = -1;
-        if (oneSwapMove.swap) {
-            swappedVertex = pickAnyFromShore(part, to);
-            if (swappedVertex < 0) {
-                return new TabuResult(sizeA, sizeB, sizeC);
-            }
-            part[swappedVertex] = 2;
-            if (to == 0) {
-                sizeA--;
-            } else {
-                sizeB--;
+        int numSwapped = 0;
+        if (bestSwap) {
+            while (((to == 0) ? sizeA : sizeB) + weights[v] > maxShoreSize) {
+                int swappedVertex = parts.pickRandom(to, random);
+                if (swappedVertex < 0) {
+                    return;
+                }
+                moveVertex(swappedVertex, to, (byte)2);
+                if (to == 0) {
+                    sizeA -= weights[swappedVertex];
+                } else {
+                    sizeB -= weights[swappedVertex];
+                }
+                sizeC += weights[swappedVertex];
+                costC += costs[swappedVertex];
+                if (numSwapped == swapped.length) {
+                    swapped = Arrays.copyOf(swapped, 2 * numSwapped);
+                }
+                swapped[numSwapped++] = swappedVertex;
             }
-            sizeC++;
         }
 
-        part[v] = to;
-        sizeC--;
+        moveVertex(v, (byte)2, to);
+        sizeC -= weights[v];
+        costC -= costs[v];
         if (to == 0) {
-            sizeA++;
+            sizeA += weights[v];
         } else {
-            sizeB++;
+            sizeB += weights[v];
         }
 
-        for (int u : neighbourhoodData.neighbourhoodMatrix[v]) {
+        for (int p = offsets[v], end = offsets[v + 1]; p < end; p++) {
+            int u = targets[p];
             if (part[u] == opp) {
-                part[u] = 2;
-                sizeC++;
+                moveVertex(u, opp, (byte)2);
+                sizeC += weights[u];
+                costC += costs[u];
                 if (opp == 0) {
-                    sizeA--;
+                    sizeA -= weights[u];
                 } else {
-                    sizeB--;
+                    sizeB -= weights[u];
                 }
             }
         }
 
         int tenure = tabuTenure(sizeC);
-        tabuUntil[v][to] = iter + tenure;
-        if (oneSwapMove.swap && swappedVertex >= 0) {
-            tabuUntil[swappedVertex][to] = iter + tenure;
+        tabuHorizon = Math.max(tabuHorizon, iter + tenure);
+        tabuUntil[2 * v + to] = iter + tenure;
+        for (int k = 0; k < numSwapped; k++) {
+            tabuUntil[2 * swapped[k] + to] = iter + tenure;
+        }
+    }
+
+    private void moveVertex(int u, byte from, byte to) {
+        part[u] = to;
+        parts.move(u, from, to);
+        if (from == 2) {
+            bucketA.remove(u, gainToA[u]);
+            bucketB.remove(u, gainToB[u]);
         }
 
-        return new TabuResult(sizeA, sizeB, sizeC);
+        int wu = weights[u];
+        int cu = costs[u];
+        int[] nInFrom = (from == 0) ? nInA : (from == 1) ? nInB : null;
+        int[] nInTo = (to == 0) ? nInA : (to == 1) ? nInB : null;
+        int[] costInFrom = (from == 0) ? costInA : (from == 1) ? costInB : null;
+        int[] costInTo = (to == 0) ? costInA : (to == 1) ? costInB : null;
+        boolean separateCosts = costInA != nInA;
+        for (int p = offsets[u], end = offsets[u + 1]; p < end; p++) {
+            int x = targets[p];
+            if (nInFrom != null) {
+                nInFrom[x] -= wu;
+                if (separateCosts) costInFrom[x] -= cu;
+            }
+            if (nInTo != null) {
+                nInTo[x] += wu;
+                if (separateCosts) costInTo[x] += cu;
+            }
+            if (part[x] == 2) {
+                rescore(x);
+            }
+        }
+
+        if (to == 2) {
+            gainToA[u] = costs[u] - costInB[u];
+            gainToB[u] = costs[u] - costInA[u];
+            bucketA.insert(u, gainToA[u]);
+            bucketB.insert(u, gainToB[u]);
+        }
+    }
+
+    private void rescore(int x) {
+        int oldA = gainToA[x];
+        int oldB = gainToB[x];
+        int newA = costs[x] - costInB[x];
+        int newB = costs[x] - costInA[x];
+        if (newA != oldA) {
+            gainToA[x] = newA;
+            bucketA.shift(x, oldA, newA);
+        }
+        if (newB != oldB) {
+            gainToB[x] = newB;
+            bucketB.shift(x, oldB, newB);
+        }
     }
 
     private int tabuTenure(int cSize) {
@@ -220,19 +392,4 @@ public class TabuSearch {
         int term2 = Math.min(random.nextInt(bound + 1), halfC);
         return Math.max(1, term1 + term2);
     }
-
-    private int pickAnyFromShore(byte[] part, byte shore) {
-        for (int tries = 0; tries < 10_000; tries++) {
-            int i = random.nextInt(part.length);
-            if (part[i] == shore) {
-                return i;
-            }
-        }
-        for (int i = 0; i < part.length; i++) {
-            if (part[i] == shore) {
-                return i;
-            }
-        }
-        return -1;
-    }
 }
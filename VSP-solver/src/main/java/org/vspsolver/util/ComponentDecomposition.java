@@ -0,0 +1,183 @@
+package org.vspsolver.util;
+
+import java.util.Arrays;
+
+public class ComponentDecomposition {
+    public final int numComponents;
+    public final int[] componentOf;
+    public final int[] componentSizes;
+    // total vertex weight of each component, what packing counts against maxShoreSize
+    public final int[] componentWeights;
+
+    private ComponentDecomposition(int numComponents, int[] componentOf, int[] componentSizes,
+                                   int[] componentWeights) {
+        this.numComponents = numComponents;
+        this.componentOf = componentOf;
+        this.componentSizes = componentSizes;
+        this.componentWeights = componentWeights;
+    }
+
+    public static ComponentDecomposition of(GraphNeighbourData neighbourData) {
+        int n = neighbourData.size();
+        int[] componentOf = new int[n];
+        Arrays.fill(componentOf, -1);
+        int[] queue = new int[n];
+        int[] sizes = new int[n];
+        int[] weights = new int[n];
+        int numComponents = 0;
+
+        for (int s = 0; s < n; s++) {
+            if (componentOf[s] >= 0) {
+                continue;
+            }
+            int head = 0, tail = 0;
+            queue[tail++] = s;
+            componentOf[s] = numComponents;
+            while (head < tail) {
+                int v = queue[head++];
+                weights[numComponents] += neighbourData.weights[v];
+                for (int p = neighbourData.offsets[v]; p < neighbourData.offsets[v + 1]; p++) {
+                    int u = neighbourData.targets[p];
+                    if (componentOf[u] < 0) {
+                        componentOf[u] = numComponents;
+                        queue[tail++] = u;
+                    }
+                }
+            }
+            sizes[numComponents++] = tail;
+        }
+
+        return new ComponentDecomposition(numComponents, componentOf, Arrays.copyOf(sizes, numComponents),
+                Arrays.copyOf(weights, numComponents));
+    }
+
+    public int largestComponent() {
+        int largest = 0;
+        for (int c = 1; c < numComponents; c++) {
+            if (componentWeights[c] > componentWeights[largest]) {
+                largest = c;
+            }
+        }
+        return largest;
+    }
+
+    public int[] verticesOf(int component) {
+        int[] vertices = new int[componentSizes[component]];
+        int k = 0;
+        for (int v = 0; v < componentOf.length; v++) {
+            if (componentOf[v] == component) {
+                vertices[k++] = v;
+            }
+        }
+        return vertices;
+    }
+
+    // whole components to shore 0/1, both non-empty and within maxShoreSize (C stays empty), or null
+    public byte[] packIntoShores(int maxShoreSize) {
+        int total = totalWeight(-1);
+        if (numComponents < 2) {
+            return null;
+        }
+        return packComponents(-1, Math.max(1, total - maxShoreSize), Math.min(maxShoreSize, total - 1));
+    }
+
+    // all components but the excluded one (marked 2) packed as evenly as possible, or null if they do not fit
+    public byte[] packAround(int excluded, int maxShoreSize) {
+        return packAround(excluded, maxShoreSize, maxShoreSize);
+    }
+
+    // the same with separate room left on each shore: weight on shore 0 at most maxLoadA, on shore 1 at most maxLoadB
+    public byte[] packAround(int excluded, int maxLoadA, int maxLoadB) {
+        int rest = totalWeight(excluded);
+        return packComponents(excluded, Math.max(0, rest - maxLoadB), Math.min(maxLoadA, rest));
+    }
+
+    private int totalWeight(int excluded) {
+        int total = 0;
+        for (int c = 0; c < numComponents; c++) {
+            if (c != excluded) {
+                total += componentWeights[c];
+            }
+        }
+        return total;
+    }
+
+    // shore 0 gets components weighing between lo and hi in total, as close to the middle of that range as possible
+    private byte[] packComponents(int excluded, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+
+        // components heavier than hi can only go to shore 1
+        int maxWeight = 0;
+        for (int c = 0; c < numComponents; c++) {
+            if (c != excluded && componentWeights[c] <= hi) {
+                maxWeight = Math.max(maxWeight, componentWeights[c]);
+            }
+        }
+        int[] countOfWeight = new int[maxWeight + 1];
+        for (int c = 0; c < numComponents; c++) {
+            if (c != excluded && componentWeights[c] <= hi) {
+                countOfWeight[componentWeights[c]]++;
+            }
+        }
+
+        // bounded subset sum over the distinct component weights; reachedBy[sum] is the weight that
+        // first reached sum and usedCount[sum] how many components of that weight it took
+        int[] reachedBy = new int[hi + 1];
+        int[] usedCount = new int[hi + 1];
+        Arrays.fill(reachedBy, -1);
+        reachedBy[0] = 0;
+        for (int weight = 1; weight <= maxWeight; weight++) {
+            int count = countOfWeight[weight];
+            if (count == 0) {
+                continue;
+            }
+            for (int sum = weight; sum <= hi; sum++) {
+                int from = sum - weight;
+                if (reachedBy[sum] >= 0 || reachedBy[from] < 0) {
+                    continue;
+                }
+                if (reachedBy[from] != weight) {
+                    reachedBy[sum] = weight;
+                    usedCount[sum] = 1;
+                } else if (usedCount[from] < count) {
+                    reachedBy[sum] = weight;
+                    usedCount[sum] = usedCount[from] + 1;
+                }
+            }
+        }
+
+        long twiceMiddle = (long) lo + hi;
+        int best = -1;
+        for (int sum = lo; sum <= hi; sum++) {
+            if (reachedBy[sum] >= 0 && (best < 0 || Math.abs(2L * sum - twiceMiddle) < Math.abs(2L * best - twiceMiddle))) {
+                best = sum;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+
+        int[] takeOfWeight = new int[maxWeight + 1];
+        for (int sum = best; sum > 0; ) {
+            int weight = reachedBy[sum];
+            takeOfWeight[weight] += usedCount[sum];
+            sum -= weight * usedCount[sum];
+        }
+
+        byte[] shoreOf = new byte[numComponents];
+        for (int c = 0; c < numComponents; c++) {
+            int weight = componentWeights[c];
+            if (c == excluded) {
+                shoreOf[c] = 2;
+            } else if (weight <= maxWeight && takeOfWeight[weight] > 0) {
+                takeOfWeight[weight]--;
+                shoreOf[c] = 0;
+            } else {
+                shoreOf[c] = 1;
+            }
+        }
+        return shoreOf;
+    }
+}
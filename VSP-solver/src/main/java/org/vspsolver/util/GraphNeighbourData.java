@@ -1,31 +1,111 @@
 package org.vspsolver.util;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 public class GraphNeighbourData {
     public final int[] ids;
-    public final Map<Integer,Integer> indexOfIds;
-    public final int[][] neighbourhoodMatrix;
+    public final int[] offsets;
+    public final int[] targets;
+    // weights count against maxShoreSize, costs are what the separator minimises
+    public final int[] weights;
+    public final boolean unitWeights;
+    public final int[] costs;
+    public final boolean costsAreWeights;
     public final int degreeMaxTop5Avg;
+    private final int[] denseIndex;
+    // only for ids too sparse or negative to index an array
+    private final Map<Integer,Integer> indexOfIds;
+    // per-vertex copies of the CSR rows, only built for callers that ask for them
+    private volatile int[][] neighbourhoodMatrix;
 
-    public GraphNeighbourData(int[] ids, Map<Integer,Integer> indexOfIds, int[][] neighbourhoodMatrix, int degreeMaxTop5Avg) {
+    public GraphNeighbourData(int[] ids, int[] offsets, int[] targets, int degreeMaxTop5Avg) {
+        this(ids, offsets, targets, null, null, degreeMaxTop5Avg);
+    }
+
+    public GraphNeighbourData(int[] ids, int[] offsets, int[] targets, int[] weights, int[] costs,
+                              int degreeMaxTop5Avg) {
         this.ids = ids;
-        this.indexOfIds = indexOfIds;
-        this.neighbourhoodMatrix = neighbourhoodMatrix;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.unitWeights = weights == null || GraphNeighbourUtil.allOnes(weights);
+        this.weights = weights != null ? weights : GraphNeighbourUtil.ones(ids.length);
+        this.costsAreWeights = costs == null || Arrays.equals(costs, this.weights);
+        this.costs = costsAreWeights ? this.weights : costs;
         this.degreeMaxTop5Avg = degreeMaxTop5Avg;
+        this.denseIndex = GraphNeighbourUtil.denseIndexOf(ids);
+        this.indexOfIds = denseIndex == null ? GraphNeighbourUtil.indexMapOf(ids) : null;
     }
 
-    public Map<Integer, int[]> getNeighbourhoodAsMap() {
-        Map<Integer, int[]> neighbours = new HashMap<>();
-        int n = ids.length;
-        for (int i = 0; i < n; i++) {
-            neighbours.put(ids[i], neighbourhoodMatrix[i]);
+    public int indexOf(int id) {
+        if (denseIndex != null) {
+            return (id >= 0 && id < denseIndex.length) ? denseIndex[id] : -1;
         }
-        return neighbours;
+        return indexOfIds.getOrDefault(id, -1);
+    }
+
+    public int[][] getNeighbourhoodMatrix() {
+        int[][] matrix = neighbourhoodMatrix;
+        if (matrix == null) {
+            matrix = GraphNeighbourUtil.toNeighbourhoodMatrix(offsets, targets);
+            neighbourhoodMatrix = matrix;
+        }
+        return matrix;
+    }
+
+    public int degree(int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    public int weightOf(int[] vertices) {
+        if (unitWeights) {
+            return vertices.length;
+        }
+        int sum = 0;
+        for (int id : vertices) {
+            sum += weights[indexOf(id)];
+        }
+        return sum;
+    }
+
+    public int costOf(int[] vertices) {
+        if (costsAreWeights) {
+            return weightOf(vertices);
+        }
+        int sum = 0;
+        for (int id : vertices) {
+            sum += costs[indexOf(id)];
+        }
+        return sum;
+    }
+
+    public int totalWeight() {
+        if (unitWeights) {
+            return ids.length;
+        }
+        int sum = 0;
+        for (int w : weights) {
+            sum += w;
+        }
+        return sum;
+    }
+
+    public int totalCost() {
+        if (costsAreWeights) {
+            return totalWeight();
+        }
+        int sum = 0;
+        for (int c : costs) {
+            sum += c;
+        }
+        return sum;
     }
 
     public int size() {
         return ids.length;
     }
+
+    public int numEdges() {
+        return targets.length / 2;
+    }
 }
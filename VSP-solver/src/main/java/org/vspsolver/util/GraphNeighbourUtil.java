@@ -1,58 +1,416 @@
 package org.vspsolver.util;
 
 import org.graph4j.Graph;
+import org.graph4j.GraphBuilder;
 
 import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class GraphNeighbourUtil {
+    public static final int PARALLEL_THRESHOLD = 1 << 15;
+
     private GraphNeighbourUtil() {}
 
     public static GraphNeighbourData build(Graph graph) {
-        int[] ids = graph.vertices();
+        int[] ids = graph.vertices().clone();
         int n = ids.length;
+        boolean parallel = n >= PARALLEL_THRESHOLD;
 
-        Map<Integer, Integer> indexOfVertex = new HashMap<>(n * 2);
-        for (int i = 0; i < n; i++) {
-            indexOfVertex.put(ids[i], i);
+        int[] offsets = new int[n + 1];
+        rangeFor(n, parallel, i -> offsets[i + 1] = graph.degree(ids[i]));
+        prefixSum(offsets, parallel);
+
+        int[] targets = new int[offsets[n]];
+        rangeFor(n, parallel, i -> {
+            int pos = offsets[i];
+            for (int u : graph.neighbors(ids[i])) {
+                targets[pos++] = graph.indexOf(u);
+            }
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+        });
+
+        int degreeMaxTop5Avg = computeDegreeMaxTop5Avg(offsets);
+
+        return new GraphNeighbourData(ids, offsets, targets, degreeMaxTop5Avg);
+    }
+
+    public static GraphNeighbourData build(ParsedInstance instance) {
+        int[] ids = instance.vertices.clone();
+        int n = ids.length;
+        int m = instance.numEdges();
+        boolean parallel = n >= PARALLEL_THRESHOLD;
+
+        int[] denseIndex = denseIndexOf(ids);
+        Map<Integer, Integer> indexOfVertex = denseIndex == null ? indexMapOf(ids) : null;
+
+        int[] sources = new int[m];
+        int[] destinations = new int[m];
+        int[] rowOffsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            int u = indexOf(instance.edgeSources[e], denseIndex, indexOfVertex);
+            int v = indexOf(instance.edgeTargets[e], denseIndex, indexOfVertex);
+            if (u == v) {
+                sources[e] = -1;
+                continue;
+            }
+            sources[e] = u;
+            destinations[e] = v;
+            rowOffsets[u + 1]++;
+            rowOffsets[v + 1]++;
         }
+        prefixSum(rowOffsets, parallel);
 
-        List<List<Integer>> temp = new ArrayList<>(n);
+        int[] rows = new int[rowOffsets[n]];
+        int[] cursor = Arrays.copyOf(rowOffsets, n);
+        for (int e = 0; e < m; e++) {
+            int u = sources[e];
+            if (u < 0) {
+                continue;
+            }
+            int v = destinations[e];
+            rows[cursor[u]++] = v;
+            rows[cursor[v]++] = u;
+        }
+
+        // transposing the symmetric rows lists every neighbour in ascending order,
+        // which also puts duplicate edges next to each other
+        int[] targets = new int[rows.length];
+        System.arraycopy(rowOffsets, 0, cursor, 0, n);
         for (int i = 0; i < n; i++) {
-            temp.add(new ArrayList<>());
+            for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                int j = rows[p];
+                if (cursor[j] > rowOffsets[j] && targets[cursor[j] - 1] == i) {
+                    continue;
+                }
+                targets[cursor[j]++] = i;
+            }
         }
 
+        int[] offsets = rowOffsets;
+        int total = 0;
         for (int i = 0; i < n; i++) {
-            int vertexI = ids[i];
-            for (int j = i + 1; j < n; j++) {
-                int vertexJ = ids[j];
-                if (graph.containsEdge(vertexI, vertexJ)) {
-                    temp.get(i).add(j);
-                    temp.get(j).add(i);
+            total += cursor[i] - rowOffsets[i];
+        }
+        if (total != targets.length) {
+            offsets = new int[n + 1];
+            int[] compact = new int[total];
+            for (int i = 0; i < n; i++) {
+                int degree = cursor[i] - rowOffsets[i];
+                System.arraycopy(targets, rowOffsets[i], compact, offsets[i], degree);
+                offsets[i + 1] = offsets[i] + degree;
+            }
+            targets = compact;
+        }
+
+        return new GraphNeighbourData(ids, offsets, targets, null,
+                instance.costs != null ? instance.costs.clone() : null, computeDegreeMaxTop5Avg(offsets));
+    }
+
+    public static GraphNeighbourData induced(GraphNeighbourData neighbourData, int[] vertices) {
+        int[] newIndex = new int[neighbourData.size()];
+        Arrays.fill(newIndex, -1);
+        for (int k = 0; k < vertices.length; k++) {
+            newIndex[vertices[k]] = k;
+        }
+
+        int[] ids = new int[vertices.length];
+        int[] weights = new int[vertices.length];
+        int[] costs = neighbourData.costsAreWeights ? null : new int[vertices.length];
+        int[] offsets = new int[vertices.length + 1];
+        for (int k = 0; k < vertices.length; k++) {
+            int v = vertices[k];
+            ids[k] = neighbourData.ids[v];
+            weights[k] = neighbourData.weights[v];
+            if (costs != null) {
+                costs[k] = neighbourData.costs[v];
+            }
+            int degree = 0;
+            for (int p = neighbourData.offsets[v]; p < neighbourData.offsets[v + 1]; p++) {
+                if (newIndex[neighbourData.targets[p]] >= 0) {
+                    degree++;
                 }
             }
+            offsets[k + 1] = offsets[k] + degree;
         }
 
-        int[][] neighbourhoodMatrix = new int[n][];
-        int[] degrees = new int[n];
+        int[] targets = new int[offsets[vertices.length]];
+        for (int k = 0; k < vertices.length; k++) {
+            int v = vertices[k];
+            int pos = offsets[k];
+            for (int p = neighbourData.offsets[v]; p < neighbourData.offsets[v + 1]; p++) {
+                int u = newIndex[neighbourData.targets[p]];
+                if (u >= 0) {
+                    targets[pos++] = u;
+                }
+            }
+            Arrays.sort(targets, offsets[k], offsets[k + 1]);
+        }
+
+        return fromCsr(ids, offsets, targets, weights, costs);
+    }
+
+    public static GraphNeighbourData fromCsr(int[] ids, int[] offsets, int[] targets) {
+        return fromCsr(ids, offsets, targets, null, null);
+    }
+
+    public static GraphNeighbourData fromCsr(int[] ids, int[] offsets, int[] targets, int[] weights, int[] costs) {
+        return new GraphNeighbourData(ids, offsets, targets, weights, costs, computeDegreeMaxTop5Avg(offsets));
+    }
+
+    public static GraphNeighbourData reorderRcm(GraphNeighbourData neighbourData) {
+        int[] order = cuthillMcKeeOrder(neighbourData);
+        for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return permute(neighbourData, order);
+    }
+
+    public static GraphNeighbourData permute(GraphNeighbourData neighbourData, int[] order) {
+        int n = neighbourData.size();
+        boolean parallel = n >= PARALLEL_THRESHOLD;
+
+        int[] newIndex = new int[n];
+        for (int k = 0; k < n; k++) {
+            newIndex[order[k]] = k;
+        }
+
+        int[] ids = new int[n];
+        int[] weights = new int[n];
+        int[] costs = neighbourData.costsAreWeights ? null : new int[n];
+        int[] offsets = new int[n + 1];
+        for (int k = 0; k < n; k++) {
+            ids[k] = neighbourData.ids[order[k]];
+            weights[k] = neighbourData.weights[order[k]];
+            if (costs != null) {
+                costs[k] = neighbourData.costs[order[k]];
+            }
+            offsets[k + 1] = neighbourData.degree(order[k]);
+        }
+        prefixSum(offsets, parallel);
+
+        int[] targets = new int[offsets[n]];
+        rangeFor(n, parallel, k -> {
+            int old = order[k];
+            int pos = offsets[k];
+            for (int p = neighbourData.offsets[old]; p < neighbourData.offsets[old + 1]; p++) {
+                targets[pos++] = newIndex[neighbourData.targets[p]];
+            }
+            Arrays.sort(targets, offsets[k], offsets[k + 1]);
+        });
+
+        return fromCsr(ids, offsets, targets, weights, costs);
+    }
+
+    private static int[] cuthillMcKeeOrder(GraphNeighbourData neighbourData) {
+        int n = neighbourData.size();
+        int[] offsets = neighbourData.offsets;
+        int[] targets = neighbourData.targets;
+
+        int maxDegree = 0;
+        for (int i = 0; i < n; i++) {
+            maxDegree = Math.max(maxDegree, neighbourData.degree(i));
+        }
+        int[] byDegree = new int[n];
+        int[] degreeStart = new int[maxDegree + 2];
+        for (int i = 0; i < n; i++) {
+            degreeStart[neighbourData.degree(i) + 1]++;
+        }
+        for (int d = 1; d < degreeStart.length; d++) {
+            degreeStart[d] += degreeStart[d - 1];
+        }
         for (int i = 0; i < n; i++) {
-            List<Integer> neighbourList = temp.get(i);
-            degrees[i] = neighbourList.size();
-            int[] arr = new int[neighbourList.size()];
-            for (int j = 0; j < neighbourList.size(); j++) {
-                arr[j] = neighbourList.get(j);
+            byDegree[degreeStart[neighbourData.degree(i)]++] = i;
+        }
+
+        boolean[] visited = new boolean[n];
+        int[] order = new int[n];
+        int[] level = new int[n];
+        Arrays.fill(level, -1);
+        long[] byDegreeScratch = new long[maxDegree];
+        int tail = 0;
+
+        for (int seed : byDegree) {
+            if (visited[seed]) {
+                continue;
+            }
+            int start = pseudoPeripheralVertex(neighbourData, seed, level, order, tail);
+
+            int head = tail;
+            order[tail++] = start;
+            visited[start] = true;
+            while (head < tail) {
+                int v = order[head++];
+                int count = 0;
+                for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                    int u = targets[p];
+                    if (!visited[u]) {
+                        visited[u] = true;
+                        byDegreeScratch[count++] = ((long) neighbourData.degree(u) << 32) | u;
+                    }
+                }
+                Arrays.sort(byDegreeScratch, 0, count);
+                for (int i = 0; i < count; i++) {
+                    order[tail++] = (int) byDegreeScratch[i];
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int pseudoPeripheralVertex(GraphNeighbourData neighbourData, int start,
+                                              int[] level, int[] queue, int queueStart) {
+        int eccentricity = -1;
+        while (true) {
+            int tail = queueStart;
+            queue[tail++] = start;
+            level[start] = 0;
+            int lastLevel = 0;
+            for (int head = queueStart; head < tail; head++) {
+                int v = queue[head];
+                lastLevel = level[v];
+                for (int p = neighbourData.offsets[v]; p < neighbourData.offsets[v + 1]; p++) {
+                    int u = neighbourData.targets[p];
+                    if (level[u] < 0) {
+                        level[u] = level[v] + 1;
+                        queue[tail++] = u;
+                    }
+                }
+            }
+
+            int candidate = start;
+            for (int i = tail - 1; i >= queueStart && level[queue[i]] == lastLevel; i--) {
+                if (neighbourData.degree(queue[i]) < neighbourData.degree(candidate) || candidate == start) {
+                    candidate = queue[i];
+                }
+            }
+            for (int i = queueStart; i < tail; i++) {
+                level[queue[i]] = -1;
+            }
+
+            if (lastLevel <= eccentricity) {
+                return start;
+            }
+            eccentricity = lastLevel;
+            start = candidate;
+        }
+    }
+
+    public static Graph toGraph(GraphNeighbourData neighbourData) {
+        int[] ids = neighbourData.ids;
+        int[] offsets = neighbourData.offsets;
+        int[] targets = neighbourData.targets;
+
+        Graph graph = GraphBuilder.vertices(ids.clone())
+                .estimatedNumEdges(neighbourData.numEdges())
+                .buildGraph();
+        graph.setSafeMode(false);
+        for (int i = 0; i < ids.length; i++) {
+            for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+                int j = targets[p];
+                if (i < j) {
+                    graph.addEdge(ids[i], ids[j]);
+                }
+            }
+        }
+        graph.setSafeMode(true);
+        return graph;
+    }
+
+    static int[] denseIndexOf(int[] ids) {
+        int maxId = -1;
+        for (int id : ids) {
+            if (id < 0) {
+                return null;
             }
-            neighbourhoodMatrix[i] = arr;
+            maxId = Math.max(maxId, id);
         }
+        if (maxId >= 4 * ids.length + 16) {
+            return null;
+        }
+        int[] denseIndex = new int[maxId + 1];
+        Arrays.fill(denseIndex, -1);
+        for (int i = 0; i < ids.length; i++) {
+            denseIndex[ids[i]] = i;
+        }
+        return denseIndex;
+    }
+
+    static Map<Integer, Integer> indexMapOf(int[] ids) {
+        Map<Integer, Integer> indexOfVertex = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            indexOfVertex.put(ids[i], i);
+        }
+        return indexOfVertex;
+    }
+
+    private static int indexOf(int id, int[] denseIndex, Map<Integer, Integer> indexOfVertex) {
+        int index = -1;
+        if (denseIndex != null) {
+            if (id >= 0 && id < denseIndex.length) {
+                index = denseIndex[id];
+            }
+        } else {
+            index = indexOfVertex.getOrDefault(id, -1);
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("Edge endpoint is not a vertex: " + id);
+        }
+        return index;
+    }
+
+    static int[] ones(int n) {
+        int[] weights = new int[n];
+        Arrays.fill(weights, 1);
+        return weights;
+    }
 
-        int degreeMaxTop5Avg = computeDegreeMaxTop5Avg(degrees);
+    static boolean allOnes(int[] weights) {
+        for (int w : weights) {
+            if (w != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int[][] toNeighbourhoodMatrix(int[] offsets, int[] targets) {
+        int n = offsets.length - 1;
+        int[][] neighbourhoodMatrix = new int[n][];
+        rangeFor(n, n >= PARALLEL_THRESHOLD,
+                i -> neighbourhoodMatrix[i] = Arrays.copyOfRange(targets, offsets[i], offsets[i + 1]));
+        return neighbourhoodMatrix;
+    }
+
+    private static void prefixSum(int[] offsets, boolean parallel) {
+        if (parallel) {
+            Arrays.parallelPrefix(offsets, Integer::sum);
+            return;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+    }
 
-        return new GraphNeighbourData(ids, indexOfVertex, neighbourhoodMatrix, degreeMaxTop5Avg);
+    private static void rangeFor(int n, boolean parallel, IntConsumer body) {
+        if (parallel) {
+            IntStream.range(0, n).parallel().forEach(body);
+        } else {
+            for (int i = 0; i < n; i++) {
+                body.accept(i);
+            }
+        }
     }
 
-    private static int computeDegreeMaxTop5Avg(int[] degrees) {
-        int n = degrees.length;
+    private static int computeDegreeMaxTop5Avg(int[] offsets) {
+        int n = offsets.length - 1;
 
-        int[] copy = degrees.clone();
+        int[] copy = new int[n];
+        for (int i = 0; i < n; i++) {
+            copy[i] = offsets[i + 1] - offsets[i];
+        }
         Arrays.sort(copy);
 
         int k = Math.max(1, (int)Math.ceil(0.05 * n));
@@ -0,0 +1,412 @@
+package org.vspsolver.util;
+
+import org.graph4j.Graph;
+import org.graph4j.util.VertexSet;
+import org.graph4j.vsp.VertexSeparator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GraphReduction {
+    // off until the reduction has been benchmarked against the unreduced search
+    public static boolean ENABLED = false;
+    public static final int SIMPLICIAL_MAX_DEGREE = 8;
+    // off: unlike a simplicial vertex, a dominated one can end up with neighbours on both shores once
+    // its dominator is in C, and lifting then has to put it in C at a cost the reduced search never saw
+    public static final boolean REDUCE_DOMINATED = false;
+    public static final int DOMINATED_MAX_DEGREE = 8;
+    public static final boolean COMPRESS_TWINS = true;
+    public static final int MIN_REDUCED_SIZE = 3;
+
+    public final GraphNeighbourData original;
+    public final GraphNeighbourData reduced;
+    public final int maxShoreSize;
+    public final int reducedMaxShoreSize;
+
+    private final int[] removalOrder;
+    private final GraphNeighbourData peeled;
+    // members of compressed vertex k (indices into peeled) are members[memberOffsets[k] .. memberOffsets[k + 1])
+    private final int[] memberOffsets;
+    private final int[] members;
+
+    private GraphReduction(GraphNeighbourData original, GraphNeighbourData peeled, int maxShoreSize,
+                           int removedWeight, int[] removalOrder, boolean compressTwins) {
+        this.original = original;
+        this.peeled = peeled;
+        this.maxShoreSize = maxShoreSize;
+        this.reducedMaxShoreSize = maxShoreSize - removedWeight;
+        this.removalOrder = removalOrder;
+
+        TwinClasses twins = compressTwins ? TwinClasses.of(peeled, reducedMaxShoreSize) : null;
+        if (twins != null && twins.numClasses < peeled.size() && twins.numClasses >= MIN_REDUCED_SIZE) {
+            this.reduced = twins.compress(peeled);
+            this.memberOffsets = twins.memberOffsets;
+            this.members = twins.members;
+        } else {
+            this.reduced = peeled;
+            this.memberOffsets = null;
+            this.members = null;
+        }
+    }
+
+    // the reduced instance keeps one shore slot per removed vertex in reserve, so lifting never
+    // has to push a removed vertex into C; removals are capped at half the capacity slack
+    public static GraphReduction reduce(GraphNeighbourData neighbourData, int maxShoreSize) {
+        return reduce(neighbourData, maxShoreSize, ENABLED);
+    }
+
+    public static GraphReduction reduce(GraphNeighbourData neighbourData, int maxShoreSize, boolean enabled) {
+        int maxRemoved = Math.min(maxShoreSize - 1, (2 * maxShoreSize - neighbourData.totalWeight()) / 2);
+        if (!enabled || maxRemoved <= 0) {
+            return new GraphReduction(neighbourData, neighbourData, maxShoreSize, 0, new int[0],
+                    enabled && COMPRESS_TWINS);
+        }
+        return new Reducer(neighbourData, maxShoreSize, maxRemoved).run();
+    }
+
+    public int numRemoved() {
+        return removalOrder.length;
+    }
+
+    public VertexSeparator lift(Graph graph, VertexSeparator reducedSeparator) {
+        VertexSeparator sep = members != null ? expandTwins(graph, reducedSeparator) : reducedSeparator;
+        if (removalOrder.length == 0) {
+            return sep;
+        }
+
+        int n = original.size();
+        int[] weights = original.weights;
+        byte[] part = new byte[n];
+        Arrays.fill(part, (byte) -1);
+        int sizeA = 0, sizeB = 0;
+        for (int v : sep.leftShore().vertices()) {
+            int i = original.indexOf(v);
+            part[i] = 0;
+            sizeA += weights[i];
+        }
+        for (int v : sep.rightShore().vertices()) {
+            int i = original.indexOf(v);
+            part[i] = 1;
+            sizeB += weights[i];
+        }
+        for (int v : sep.separator().vertices()) {
+            part[original.indexOf(v)] = 2;
+        }
+
+        // vertices come back in reverse removal order, so every neighbour they had when they
+        // were removed is already placed; neighbours still unplaced are checked later from their side
+        for (int k = removalOrder.length - 1; k >= 0; k--) {
+            int v = removalOrder[k];
+            boolean nextToA = false, nextToB = false;
+            for (int p = original.offsets[v]; p < original.offsets[v + 1]; p++) {
+                byte pu = part[original.targets[p]];
+                if (pu == 0) nextToA = true;
+                else if (pu == 1) nextToB = true;
+            }
+            boolean fitsA = !nextToB && sizeA + weights[v] <= maxShoreSize;
+            boolean fitsB = !nextToA && sizeB + weights[v] <= maxShoreSize;
+            if (fitsA && (!fitsB || sizeA <= sizeB)) {
+                part[v] = 0;
+                sizeA += weights[v];
+            } else if (fitsB) {
+                part[v] = 1;
+                sizeB += weights[v];
+            } else {
+                part[v] = 2;
+            }
+        }
+
+        VertexSeparator lifted = new VertexSeparator(graph, maxShoreSize);
+        for (int v = 0; v < n; v++) {
+            if (part[v] == 0) {
+                lifted.leftShore().add(original.ids[v]);
+            } else if (part[v] == 1) {
+                lifted.rightShore().add(original.ids[v]);
+            } else {
+                lifted.separator().add(original.ids[v]);
+            }
+        }
+        return lifted;
+    }
+
+    private VertexSeparator expandTwins(Graph graph, VertexSeparator compressed) {
+        VertexSeparator sep = new VertexSeparator(graph, maxShoreSize);
+        for (int v : compressed.leftShore().vertices()) {
+            addMembers(v, sep.leftShore());
+        }
+        for (int v : compressed.rightShore().vertices()) {
+            addMembers(v, sep.rightShore());
+        }
+        for (int v : compressed.separator().vertices()) {
+            addMembers(v, sep.separator());
+        }
+        return sep;
+    }
+
+    private void addMembers(int id, VertexSet set) {
+        int k = reduced.indexOf(id);
+        for (int p = memberOffsets[k]; p < memberOffsets[k + 1]; p++) {
+            set.add(peeled.ids[members[p]]);
+        }
+    }
+
+    // true twins share their closed neighbourhood, so they can always be placed together; a class
+    // heavier than a shore is split into chunks that each fit, the chunks are twins of one another
+    private static final class TwinClasses {
+        final int numClasses;
+        final int[] classOf;
+        final int[] memberOffsets;
+        final int[] members;
+
+        private TwinClasses(int numClasses, int[] classOf, int[] memberOffsets, int[] members) {
+            this.numClasses = numClasses;
+            this.classOf = classOf;
+            this.memberOffsets = memberOffsets;
+            this.members = members;
+        }
+
+        static TwinClasses of(GraphNeighbourData data, int maxClassWeight) {
+            int n = data.size();
+            int[] classOf = new int[n];
+            int[] representative = new int[n];
+            int[] classWeight = new int[n];
+            int[] nextWithHash = new int[n];
+            Map<Long, Integer> firstWithHash = new HashMap<>();
+            int numClasses = 0;
+
+            for (int v = 0; v < n; v++) {
+                long hash = closedNeighbourhoodHash(data, v);
+                Integer first = firstWithHash.get(hash);
+                int found = -1;
+                for (int c = first == null ? -1 : first; c >= 0; c = nextWithHash[c]) {
+                    if (classWeight[c] + data.weights[v] <= maxClassWeight
+                            && sameClosedNeighbourhood(data, representative[c], v)) {
+                        found = c;
+                        break;
+                    }
+                }
+                if (found < 0) {
+                    found = numClasses++;
+                    representative[found] = v;
+                    nextWithHash[found] = first == null ? -1 : first;
+                    firstWithHash.put(hash, found);
+                }
+                classOf[v] = found;
+                classWeight[found] += data.weights[v];
+            }
+
+            int[] memberOffsets = new int[numClasses + 1];
+            for (int v = 0; v < n; v++) {
+                memberOffsets[classOf[v] + 1]++;
+            }
+            for (int c = 0; c < numClasses; c++) {
+                memberOffsets[c + 1] += memberOffsets[c];
+            }
+            int[] members = new int[n];
+            int[] cursor = Arrays.copyOf(memberOffsets, numClasses);
+            for (int v = 0; v < n; v++) {
+                members[cursor[classOf[v]]++] = v;
+            }
+            return new TwinClasses(numClasses, classOf, memberOffsets, members);
+        }
+
+        GraphNeighbourData compress(GraphNeighbourData data) {
+            int[] ids = new int[numClasses];
+            int[] weights = new int[numClasses];
+            int[] costs = data.costsAreWeights ? null : new int[numClasses];
+            int[] offsets = new int[numClasses + 1];
+            int[] seenBy = new int[numClasses];
+            Arrays.fill(seenBy, -1);
+
+            // twins of a neighbour are neighbours too, so the first member's row covers the whole class
+            for (int c = 0; c < numClasses; c++) {
+                int r = members[memberOffsets[c]];
+                ids[c] = data.ids[r];
+                for (int p = memberOffsets[c]; p < memberOffsets[c + 1]; p++) {
+                    weights[c] += data.weights[members[p]];
+                    if (costs != null) {
+                        costs[c] += data.costs[members[p]];
+                    }
+                }
+                int degree = 0;
+                seenBy[c] = c;
+                for (int p = data.offsets[r]; p < data.offsets[r + 1]; p++) {
+                    int d = classOf[data.targets[p]];
+                    if (seenBy[d] != c) {
+                        seenBy[d] = c;
+                        degree++;
+                    }
+                }
+                offsets[c + 1] = offsets[c] + degree;
+            }
+
+            Arrays.fill(seenBy, -1);
+            int[] targets = new int[offsets[numClasses]];
+            for (int c = 0; c < numClasses; c++) {
+                int r = members[memberOffsets[c]];
+                int pos = offsets[c];
+                seenBy[c] = c;
+                for (int p = data.offsets[r]; p < data.offsets[r + 1]; p++) {
+                    int d = classOf[data.targets[p]];
+                    if (seenBy[d] != c) {
+                        seenBy[d] = c;
+                        targets[pos++] = d;
+                    }
+                }
+                Arrays.sort(targets, offsets[c], offsets[c + 1]);
+            }
+            return GraphNeighbourUtil.fromCsr(ids, offsets, targets, weights, costs);
+        }
+
+        private static long closedNeighbourhoodHash(GraphNeighbourData data, int v) {
+            long hash = mix(v);
+            for (int p = data.offsets[v]; p < data.offsets[v + 1]; p++) {
+                hash += mix(data.targets[p]);
+            }
+            return hash;
+        }
+
+        private static boolean sameClosedNeighbourhood(GraphNeighbourData data, int u, int v) {
+            if (data.degree(u) != data.degree(v)
+                    || Arrays.binarySearch(data.targets, data.offsets[u], data.offsets[u + 1], v) < 0) {
+                return false;
+            }
+            for (int p = data.offsets[u]; p < data.offsets[u + 1]; p++) {
+                int w = data.targets[p];
+                if (w != v && Arrays.binarySearch(data.targets, data.offsets[v], data.offsets[v + 1], w) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long mix(long x) {
+            x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+            x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return x ^ (x >>> 33);
+        }
+    }
+
+    private static final class Reducer {
+        private final GraphNeighbourData data;
+        private final int n;
+        private final int maxShoreSize;
+        private final int maxRemoved;
+        private final boolean[] removed;
+        private final int[] degree;
+        private final int[] queue;
+        private final boolean[] queued;
+        private final int[] removalOrder;
+        private int numRemoved;
+        private int removedWeight;
+
+        Reducer(GraphNeighbourData data, int maxShoreSize, int maxRemoved) {
+            this.data = data;
+            this.n = data.size();
+            this.maxShoreSize = maxShoreSize;
+            this.maxRemoved = maxRemoved;
+            this.removed = new boolean[n];
+            this.degree = new int[n];
+            this.queue = new int[n];
+            this.queued = new boolean[n];
+            this.removalOrder = new int[n];
+        }
+
+        GraphReduction run() {
+            int head = 0, queueSize = n;
+            for (int v = 0; v < n; v++) {
+                degree[v] = data.degree(v);
+                queue[v] = v;
+                queued[v] = true;
+            }
+
+            while (queueSize > 0 && removedWeight < maxRemoved && n - numRemoved > MIN_REDUCED_SIZE) {
+                int v = queue[head];
+                head = (head + 1) % n;
+                queueSize--;
+                queued[v] = false;
+                if (removed[v] || removedWeight + data.weights[v] > maxRemoved
+                        || !(isSimplicial(v) || (REDUCE_DOMINATED && isDominated(v)))) {
+                    continue;
+                }
+
+                removed[v] = true;
+                removalOrder[numRemoved++] = v;
+                removedWeight += data.weights[v];
+                for (int p = data.offsets[v]; p < data.offsets[v + 1]; p++) {
+                    int u = data.targets[p];
+                    if (removed[u]) {
+                        continue;
+                    }
+                    degree[u]--;
+                    if (!queued[u]) {
+                        queued[u] = true;
+                        queue[(head + queueSize++) % n] = u;
+                    }
+                }
+            }
+
+            if (numRemoved == 0) {
+                return new GraphReduction(data, data, maxShoreSize, 0, new int[0], COMPRESS_TWINS);
+            }
+            int[] kept = new int[n - numRemoved];
+            int k = 0;
+            for (int v = 0; v < n; v++) {
+                if (!removed[v]) {
+                    kept[k++] = v;
+                }
+            }
+            return new GraphReduction(data, GraphNeighbourUtil.induced(data, kept), maxShoreSize, removedWeight,
+                    Arrays.copyOf(removalOrder, numRemoved), COMPRESS_TWINS);
+        }
+
+        // isolated vertices and leaves are the degree 0 and 1 cases
+        private boolean isSimplicial(int v) {
+            if (degree[v] > SIMPLICIAL_MAX_DEGREE) {
+                return false;
+            }
+            for (int p = data.offsets[v]; p < data.offsets[v + 1]; p++) {
+                int u = data.targets[p];
+                if (removed[u]) {
+                    continue;
+                }
+                for (int q = p + 1; q < data.offsets[v + 1]; q++) {
+                    int w = data.targets[q];
+                    if (!removed[w] && !adjacent(u, w)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        // N[v] contained in N[u] for some neighbour u
+        private boolean isDominated(int v) {
+            if (degree[v] > DOMINATED_MAX_DEGREE) {
+                return false;
+            }
+            for (int p = data.offsets[v]; p < data.offsets[v + 1]; p++) {
+                int u = data.targets[p];
+                if (removed[u]) {
+                    continue;
+                }
+                boolean dominates = true;
+                for (int q = data.offsets[v]; q < data.offsets[v + 1] && dominates; q++) {
+                    int w = data.targets[q];
+                    if (w != u && !removed[w] && !adjacent(u, w)) {
+                        dominates = false;
+                    }
+                }
+                if (dominates) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean adjacent(int u, int w) {
+            return Arrays.binarySearch(data.targets, data.offsets[u], data.offsets[u + 1], w) >= 0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.vspsolver.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+
+public class InstanceCache {
+    public static final String EXTENSION = ".csr";
+
+    private static final int MAGIC = 0x56535043;
+    private static final int VERSION = 4;
+    private static final int HEADER_BYTES = 48;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private InstanceCache() {}
+
+    public static LoadedInstance load(Path gzPath) throws IOException {
+        Path cachePath = cachePathFor(gzPath);
+        BasicFileAttributes source = Files.readAttributes(gzPath, BasicFileAttributes.class);
+
+        if (Files.isRegularFile(cachePath)) {
+            LoadedInstance cached = read(cachePath, source);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ParsedInstance parsed = InstanceParser.loadInstanceFromGZ(gzPath.toString());
+        GraphNeighbourData neighbourData = GraphNeighbourUtil.build(parsed);
+        try {
+            write(cachePath, source, parsed.maxShoreSize, parsed.costUnit, neighbourData);
+        } catch (IOException e) {
+            System.err.println("Warning: could not write instance cache " + cachePath + ": " + e.getMessage());
+        }
+        return new LoadedInstance(GraphNeighbourUtil.toGraph(neighbourData), parsed.maxShoreSize, neighbourData,
+                parsed.costUnit);
+    }
+
+    public static Path cachePathFor(Path gzPath) {
+        return gzPath.resolveSibling(gzPath.getFileName().toString() + EXTENSION);
+    }
+
+    private static LoadedInstance read(Path cachePath, BasicFileAttributes source) throws IOException {
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                return null;
+            }
+            // the header is checked before mapping, so a stale cache is never mapped and can still be replaced
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    return null;
+                }
+            }
+
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(8) != source.size()
+                    || header.getLong(16) != source.lastModifiedTime().toMillis()) {
+                return null;
+            }
+            int n = header.getInt(24);
+            int m = header.getInt(28);
+            int maxShoreSize = header.getInt(32);
+            boolean hasCosts = header.getInt(36) != 0;
+            double costUnit = header.getDouble(40);
+            if (n < 0 || m < 0 || fileSize != HEADER_BYTES + 4L * (n + (hasCosts ? n : 0) + (n + 1) + 2L * m)) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    fileSize - HEADER_BYTES);
+            IntBuffer ints = buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int[] ids = new int[n];
+            int[] costs = hasCosts ? new int[n] : null;
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[2 * m];
+            ints.get(ids);
+            if (hasCosts) {
+                ints.get(costs);
+            }
+            ints.get(offsets).get(targets);
+
+            GraphNeighbourData neighbourData = GraphNeighbourUtil.fromCsr(ids, offsets, targets, null, costs);
+            return new LoadedInstance(GraphNeighbourUtil.toGraph(neighbourData), maxShoreSize, neighbourData, costUnit);
+        }
+    }
+
+    // written through a heap buffer rather than a mapping: a live mapping of the temp file would make the
+    // rename fail on Windows
+    private static void write(Path cachePath, BasicFileAttributes source, int maxShoreSize, double costUnit,
+                              GraphNeighbourData neighbourData) throws IOException {
+        int n = neighbourData.size();
+        int m = neighbourData.numEdges();
+        boolean hasCosts = !neighbourData.costsAreWeights;
+
+        Path tmpPath = cachePath.resolveSibling(cachePath.getFileName().toString() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION)
+                    .putLong(source.size())
+                    .putLong(source.lastModifiedTime().toMillis())
+                    .putInt(n).putInt(m).putInt(maxShoreSize).putInt(hasCosts ? 1 : 0)
+                    .putDouble(costUnit);
+
+            putInts(channel, buffer, neighbourData.ids);
+            if (hasCosts) {
+                putInts(channel, buffer, neighbourData.costs);
+            }
+            putInts(channel, buffer, neighbourData.offsets);
+            putInts(channel, buffer, neighbourData.targets);
+            flush(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void putInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int i = 0; i < values.length; ) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            int count = Math.min(values.length - i, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, i, count);
+            buffer.position(buffer.position() + 4 * count);
+            i += count;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
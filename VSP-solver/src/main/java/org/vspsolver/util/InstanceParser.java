@@ -1,62 +1,272 @@
 package org.vspsolver.util;
 
-import org.graph4j.Edge;
 import org.graph4j.Graph;
-import org.graph4j.GraphBuilder;
 import org.graph4j.util.Pair;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 
 public class InstanceParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int COST_DECIMALS = 6;
+    private static final long COST_SCALE = 1_000_000L;
+    private static final int MAX_TOTAL_COST = Integer.MAX_VALUE / 2;
+
     public static Pair<Graph, Integer> loadGraphFromGZ(String filePath) throws IOException {
+        ParsedInstance instance = loadInstanceFromGZ(filePath);
+        return new Pair<>(instance.toGraph(), instance.maxShoreSize);
+    }
+
+    public static ParsedInstance loadInstanceFromGZ(String filePath) throws IOException {
         try (InputStream fileStream = new FileInputStream(filePath);
-             InputStream gzipStream = new GZIPInputStream(fileStream);
-             Reader decoder = new InputStreamReader(gzipStream);
-             BufferedReader buffered = new BufferedReader(decoder)) {
+             InputStream gzipStream = new GZIPInputStream(fileStream, BUFFER_SIZE)) {
 
-            String firstLine = buffered.readLine().trim();
-            String[] firstParts = firstLine.split("\\s+");
-            int maxShoreSize = Integer.parseInt(firstParts[0]);
-            int numNodes = Integer.parseInt(firstParts[1]);
-            int numEdges = Integer.parseInt(firstParts[2]);
+            ByteTokenizer tokenizer = new ByteTokenizer(gzipStream, new byte[BUFFER_SIZE]);
+
+            int maxShoreSize = tokenizer.nextInt();
+            int numNodes = tokenizer.nextInt();
+            int numEdges = tokenizer.nextInt();
 
             int[] vertices = new int[numNodes];
+            long[] scaledCosts = new long[numNodes];
             for (int i = 0; i < numNodes; i++) {
-                String line = buffered.readLine().trim();
-                while (line.isEmpty()) {
-                    line = buffered.readLine().trim();
-                }
-                String[] parts = line.split("\\s+");
-                if (!parts[0].equals("v")) {
-                    throw new IOException("Invalid node format: " + line);
+                if (tokenizer.nextTag() != 'v') {
+                    throw new IOException("Invalid node format at node record " + i);
                 }
-                int node = Integer.parseInt(parts[1]);
-                double cost = Double.parseDouble(parts[2]);
-                vertices[i] = node;
+                vertices[i] = tokenizer.nextInt();
+                scaledCosts[i] = tokenizer.nextScaled(COST_DECIMALS);
             }
 
-            Edge[] edges = new Edge[numEdges];
+            int[] edgeSources = new int[numEdges];
+            int[] edgeTargets = new int[numEdges];
             for (int i = 0; i < numEdges; i++) {
-                String line = buffered.readLine().trim();
-                while (line.isEmpty()) {
-                    line = buffered.readLine().trim();
+                if (tokenizer.nextTag() != 'e') {
+                    throw new IOException("Invalid edge format at edge record " + i);
                 }
-                String[] parts = line.split("\\s+");
-                if (!parts[0].equals("e")) {
-                    throw new IOException("Invalid edge format: " + line);
+                edgeSources[i] = tokenizer.nextInt();
+                edgeTargets[i] = tokenizer.nextInt();
+                tokenizer.skipToken();
+            }
+
+            return withCosts(maxShoreSize, vertices, edgeSources, edgeTargets, scaledCosts);
+        }
+    }
+
+    // costs are kept exact where possible: divided by their gcd they become small integers, and equal costs
+    // drop out entirely
+    private static ParsedInstance withCosts(int maxShoreSize, int[] vertices, int[] edgeSources, int[] edgeTargets,
+                                            long[] scaledCosts) throws IOException {
+        for (long c : scaledCosts) {
+            if (c < 0) {
+                System.err.println("Warning: negative or non-finite vertex cost, loading the instance without costs");
+                return new ParsedInstance(maxShoreSize, vertices, edgeSources, edgeTargets);
+            }
+        }
+        long unit = 0;
+        for (long c : scaledCosts) {
+            unit = gcd(unit, c);
+        }
+        boolean uniform = true;
+        for (long c : scaledCosts) {
+            uniform &= c == unit;
+        }
+        if (unit == 0 || uniform) {
+            return new ParsedInstance(maxShoreSize, vertices, edgeSources, edgeTargets, null,
+                    (double) unit / COST_SCALE);
+        }
+
+        // costs too fine-grained to sum in an int are rounded to a coarser unit, keeping non-zero costs non-zero
+        double exactTotal = 0;
+        for (long c : scaledCosts) {
+            exactTotal += c / unit;
+        }
+        double coarsening = Math.max(1, exactTotal / MAX_TOTAL_COST);
+
+        int[] costs = new int[scaledCosts.length];
+        long total = 0;
+        for (int i = 0; i < costs.length; i++) {
+            long cost = (coarsening == 1) ? scaledCosts[i] / unit : Math.round(scaledCosts[i] / (unit * coarsening));
+            if (cost == 0 && scaledCosts[i] > 0) {
+                cost = 1;
+            }
+            total += cost;
+            if (cost > Integer.MAX_VALUE || total > Integer.MAX_VALUE) {
+                throw new IOException("Vertex costs are too fine-grained to sum in an int: more than "
+                        + Integer.MAX_VALUE + " cost units");
+            }
+            costs[i] = (int) cost;
+        }
+        return new ParsedInstance(maxShoreSize, vertices, edgeSources, edgeTargets, costs,
+                unit * coarsening / COST_SCALE);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static final class ByteTokenizer {
+        private final InputStream in;
+        private final byte[] buffer;
+        private int pos;
+        private int limit;
+        private byte[] token = new byte[32];
+
+        ByteTokenizer(InputStream in, byte[] buffer) {
+            this.in = in;
+            this.buffer = buffer;
+        }
+
+        int nextTag() throws IOException {
+            int c = skipWhitespace();
+            int next = read();
+            if (next >= 0 && !isWhitespace(next)) {
+                throw new IOException("Expected a single-character record tag, found '" + (char) c + (char) next + "'");
+            }
+            return c;
+        }
+
+        int nextInt() throws IOException {
+            int c = skipWhitespace();
+            boolean negative = c == '-';
+            if (negative || c == '+') {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw new IOException("Expected an integer, found " + describe(c));
+            }
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE + 1L) {
+                    throw new IOException("Integer out of range");
                 }
-                int node1 = Integer.parseInt(parts[1]);
-                int node2 = Integer.parseInt(parts[2]);
-                double cost = Double.parseDouble(parts[3]);
-                edges[i] = new Edge(node1, node2, cost);
+                c = read();
             }
+            if (c >= 0 && !isWhitespace(c)) {
+                throw new IOException("Expected an integer, found " + describe(c));
+            }
+            long signed = negative ? -value : value;
+            if (signed > Integer.MAX_VALUE) {
+                throw new IOException("Integer out of range");
+            }
+            return (int) signed;
+        }
 
-            GraphBuilder graphBuilder = GraphBuilder.vertices(vertices);
-            for (Edge edge : edges) {
-                graphBuilder.addEdge(edge);
+        // the next cost as value * 10^decimals: exact for a plain decimal with at most that many decimals,
+        // otherwise rounded from its double value; negative for a negative or non-finite cost
+        long nextScaled(int decimals) throws IOException {
+            int length = readToken();
+            long exact = parseFixed(length, decimals);
+            if (exact >= 0) {
+                return exact;
+            }
+            String text = new String(token, 0, length, StandardCharsets.US_ASCII);
+            double value;
+            try {
+                value = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw new IOException("Expected a decimal cost, found '" + text + "'");
+            }
+            if (!Double.isFinite(value) || value < 0) {
+                return -1;
             }
-            return new Pair<>(graphBuilder.buildGraph(), maxShoreSize);
+            return Math.round(value * Math.pow(10, decimals));
+        }
+
+        // -1 unless the token is a plain non-negative decimal that fits exactly
+        private long parseFixed(int length, int decimals) {
+            int i = 0;
+            if (token[i] == '+') {
+                i++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (i < length && token[i] >= '0' && token[i] <= '9') {
+                value = value * 10 + (token[i++] - '0');
+                digits++;
+                if (value > Integer.MAX_VALUE) {
+                    return -1;
+                }
+            }
+            int fraction = 0;
+            if (i < length && token[i] == '.') {
+                i++;
+                while (i < length && token[i] >= '0' && token[i] <= '9') {
+                    if (fraction < decimals) {
+                        value = value * 10 + (token[i] - '0');
+                        fraction++;
+                    } else if (token[i] != '0') {
+                        return -1;
+                    }
+                    digits++;
+                    i++;
+                }
+            }
+            if (digits == 0 || i < length) {
+                return -1;
+            }
+            for (; fraction < decimals; fraction++) {
+                value *= 10;
+            }
+            return value;
+        }
+
+        private int readToken() throws IOException {
+            int c = skipWhitespace();
+            int length = 0;
+            while (c >= 0 && !isWhitespace(c)) {
+                if (length == token.length) {
+                    token = Arrays.copyOf(token, 2 * length);
+                }
+                token[length++] = (byte) c;
+                c = read();
+            }
+            return length;
+        }
+
+        void skipToken() throws IOException {
+            int c = skipWhitespace();
+            while (c >= 0 && !isWhitespace(c)) {
+                c = read();
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c = read();
+            while (c >= 0 && isWhitespace(c)) {
+                c = read();
+            }
+            if (c < 0) {
+                throw new EOFException("Unexpected end of instance file");
+            }
+            return c;
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static String describe(int c) {
+            return c < 0 ? "end of file" : "'" + (char) c + "'";
         }
     }
 }
@@ -0,0 +1,21 @@
+package org.vspsolver.util;
+
+import org.graph4j.Graph;
+
+public class LoadedInstance {
+    public final Graph graph;
+    public final int maxShoreSize;
+    public final GraphNeighbourData neighbourData;
+    public final double costUnit;
+
+    public LoadedInstance(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData) {
+        this(graph, maxShoreSize, neighbourData, 1.0);
+    }
+
+    public LoadedInstance(Graph graph, int maxShoreSize, GraphNeighbourData neighbourData, double costUnit) {
+        this.graph = graph;
+        this.maxShoreSize = maxShoreSize;
+        this.neighbourData = neighbourData;
+        this.costUnit = costUnit;
+    }
+}
@@ -0,0 +1,46 @@
+package org.vspsolver.util;
+
+import org.graph4j.Graph;
+import org.graph4j.GraphBuilder;
+
+public class ParsedInstance {
+    public final int maxShoreSize;
+    public final int[] vertices;
+    public final int[] edgeSources;
+    public final int[] edgeTargets;
+    // vertex costs as integer multiples of costUnit, or null when every vertex costs the same
+    public final int[] costs;
+    public final double costUnit;
+
+    public ParsedInstance(int maxShoreSize, int[] vertices, int[] edgeSources, int[] edgeTargets) {
+        this(maxShoreSize, vertices, edgeSources, edgeTargets, null, 1.0);
+    }
+
+    public ParsedInstance(int maxShoreSize, int[] vertices, int[] edgeSources, int[] edgeTargets,
+                          int[] costs, double costUnit) {
+        this.maxShoreSize = maxShoreSize;
+        this.vertices = vertices;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.costs = costs;
+        this.costUnit = costUnit;
+    }
+
+    public int numVertices() {
+        return vertices.length;
+    }
+
+    public int numEdges() {
+        return edgeSources.length;
+    }
+
+    public Graph toGraph() {
+        Graph graph = GraphBuilder.vertices(vertices)
+                .estimatedNumEdges(edgeSources.length)
+                .buildGraph();
+        for (int i = 0; i < edgeSources.length; i++) {
+            graph.addEdge(edgeSources[i], edgeTargets[i]);
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,73 @@
+package org.vspsolver.util;
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+// the vertices of each part (0=A, 1=B, 2=C) in dense arrays with swap-remove, for O(1) uniform sampling
+public class PartIndex {
+    private final int[][] members;
+    private final int[] count;
+    private final int[] pos;
+
+    public PartIndex(int n) {
+        this.members = new int[3][n];
+        this.count = new int[3];
+        this.pos = new int[n];
+    }
+
+    public void load(byte[] part) {
+        count[0] = count[1] = count[2] = 0;
+        for (int v = 0; v < part.length; v++) {
+            add(v, part[v]);
+        }
+    }
+
+    public void move(int v, byte from, byte to) {
+        if (from == to) {
+            return;
+        }
+        remove(v, from);
+        add(v, to);
+    }
+
+    public int size(byte p) {
+        return count[p];
+    }
+
+    public int get(byte p, int i) {
+        return members[p][i];
+    }
+
+    public int pickRandom(byte p, Random random) {
+        int c = count[p];
+        return c == 0 ? -1 : members[p][random.nextInt(c)];
+    }
+
+    // a random accepted member of p, or -1 if there is none; scans on from the random start
+    public int pickRandom(byte p, Random random, IntPredicate accept) {
+        int c = count[p];
+        if (c == 0) {
+            return -1;
+        }
+        int start = random.nextInt(c);
+        for (int i = 0; i < c; i++) {
+            int v = members[p][(start + i) % c];
+            if (accept.test(v)) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    private void add(int v, byte p) {
+        pos[v] = count[p];
+        members[p][count[p]++] = v;
+    }
+
+    private void remove(int v, byte p) {
+        int i = pos[v];
+        int last = members[p][--count[p]];
+        members[p][i] = last;
+        pos[last] = i;
+    }
+}
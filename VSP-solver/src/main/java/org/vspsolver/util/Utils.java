@@ -3,6 +3,7 @@ package org.vspsolver.util;
 import org.graph4j.util.VertexSet;
 
 import java.util.Random;
+import java.util.function.IntPredicate;
 
 public class Utils {
     public static void shuffle(int[] arr, Random random) {
@@ -19,17 +20,16 @@ public class Utils {
         return vertices[random.nextInt(vertices.length)];
     }
 
-    public static int pickRandomInPart(byte[] part, byte targetPart, Random random) {
-        int chosen = -1;
-        int seen = 0;
-        for (int v = 0; v < part.length; v++) {
-            if (part[v] == targetPart) {
-                seen++;
-                if (random.nextInt(seen) == 0) {
-                    chosen = v;
-                }
+    // a random accepted vertex, or -1 if there is none; scans on from the random start
+    public static int pickAny(VertexSet vertexSet, Random random, IntPredicate accept) {
+        int[] vertices = vertexSet.vertices();
+        int start = random.nextInt(vertices.length);
+        for (int i = 0; i < vertices.length; i++) {
+            int v = vertices[(start + i) % vertices.length];
+            if (accept.test(v)) {
+                return v;
             }
         }
-        return chosen;
+        return -1;
     }
 }
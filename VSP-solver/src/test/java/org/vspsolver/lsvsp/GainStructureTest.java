@@ -0,0 +1,114 @@
+package org.vspsolver.lsvsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GainStructureTest {
+    private static final int N = 200;
+    private static final int MIN_SCORE = -50;
+    private static final int MAX_SCORE = 50;
+
+    @Test
+    public void bucketsMatchReference() {
+        check(new BuckerStructure(MIN_SCORE, MAX_SCORE, N), 1);
+    }
+
+    @Test
+    public void heapMatchesReference() {
+        check(new GainHeap(MIN_SCORE, N), 2);
+    }
+
+    // random inserts, removes and shifts, with every query checked against a plain score array
+    private static void check(GainStructure structure, long seed) {
+        Random random = new Random(seed);
+        int[] score = new int[N];
+        boolean[] in = new boolean[N];
+        int size = 0;
+
+        for (int step = 0; step < 20_000; step++) {
+            int v = random.nextInt(N);
+            int s = MIN_SCORE + random.nextInt(MAX_SCORE - MIN_SCORE + 1);
+            int op = random.nextInt(10);
+            if (!in[v]) {
+                structure.insert(v, s);
+                score[v] = s;
+                in[v] = true;
+                size++;
+            } else if (op < 3) {
+                structure.remove(v, score[v]);
+                in[v] = false;
+                size--;
+            } else {
+                structure.shift(v, score[v], s);
+                score[v] = s;
+            }
+            if (step % 5000 == 4999) {
+                structure.clear();
+                Arrays.fill(in, false);
+                size = 0;
+            }
+
+            assertEquals(size, structure.size());
+            assertEquals(size == 0, structure.isEmpty());
+            for (int u = 0; u < N; u++) {
+                assertEquals(in[u], structure.contains(u));
+            }
+            if (size > 0) {
+                int top = structure.peekMaxVertex();
+                assertTrue(in[top]);
+                assertEquals(referenceMax(score, in, u -> true, Integer.MIN_VALUE), score[top]);
+            } else {
+                assertEquals(-1, structure.peekMaxVertex());
+            }
+
+            int minScore = MIN_SCORE + random.nextInt(MAX_SCORE - MIN_SCORE + 1);
+            int mod = 2 + random.nextInt(4);
+            IntPredicate accept = u -> u % mod == 0;
+            int expected = referenceMax(score, in, accept, minScore);
+            int found = structure.bestMatching(minScore, accept);
+            if (expected == Integer.MIN_VALUE) {
+                assertEquals(-1, found);
+            } else {
+                assertTrue(found >= 0 && in[found] && accept.test(found));
+                assertEquals(expected, score[found]);
+            }
+
+            List<Integer> visited = new ArrayList<>();
+            structure.visitDescending(minScore, u -> {
+                visited.add(u);
+                return true;
+            });
+            int expectedCount = 0;
+            for (int u = 0; u < N; u++) {
+                if (in[u] && score[u] >= minScore) {
+                    expectedCount++;
+                }
+            }
+            assertEquals(expectedCount, visited.size());
+            for (int i = 0; i < visited.size(); i++) {
+                int u = visited.get(i);
+                assertTrue(in[u] && score[u] >= minScore);
+                if (i > 0) {
+                    assertTrue(score[visited.get(i - 1)] >= score[u]);
+                }
+            }
+        }
+    }
+
+    private static int referenceMax(int[] score, boolean[] in, IntPredicate accept, int minScore) {
+        int best = Integer.MIN_VALUE;
+        for (int u = 0; u < score.length; u++) {
+            if (in[u] && score[u] >= minScore && accept.test(u)) {
+                best = Math.max(best, score[u]);
+            }
+        }
+        return best;
+    }
+}
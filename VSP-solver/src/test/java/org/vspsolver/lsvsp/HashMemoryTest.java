@@ -0,0 +1,59 @@
+package org.vspsolver.lsvsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashMemoryTest {
+
+    @Test
+    public void matchesFifoReferenceUnderClustering() {
+        for (int capacity : new int[]{1, 3, 16, 100}) {
+            check(capacity, new Random(capacity));
+        }
+    }
+
+    @Test
+    public void keyMatchNeedsTheFingerprint() {
+        HashMemory memory = new HashMemory(10, 10);
+        assertEquals(-1, memory.touch(42, 1, 0));
+        assertEquals(-1, memory.touch(42, 2, 1));
+        assertEquals(0, memory.touch(42, 1, 2));
+        assertEquals(1, memory.touch(42, 2, 3));
+        assertEquals(2, memory.size());
+    }
+
+    // the high key bits are masked away by the slot function, so the keys pile up on a few home slots and
+    // evictions exercise the backward shift across long probe runs
+    private static void check(int capacity, Random random) {
+        HashMemory memory = new HashMemory(Integer.MAX_VALUE, capacity);
+        Map<List<Long>, Integer> reference = new LinkedHashMap<>();
+
+        for (int iter = 0; iter < 50_000; iter++) {
+            long key = random.nextInt(4) | ((long) random.nextInt(3 * capacity) << 40);
+            long fingerprint = random.nextInt(2);
+            List<Long> entry = List.of(key, fingerprint);
+
+            Integer prev = reference.get(entry);
+            if (prev != null) {
+                reference.put(entry, iter);
+            } else {
+                if (reference.size() == capacity) {
+                    Iterator<List<Long>> oldest = reference.keySet().iterator();
+                    oldest.next();
+                    oldest.remove();
+                }
+                reference.put(entry, iter);
+            }
+
+            assertEquals(prev == null ? -1 : prev, memory.touch(key, fingerprint, iter), "iteration " + iter);
+            assertEquals(reference.size(), memory.size());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.vspsolver.lsvsp;
+
+import org.graph4j.Graph;
+import org.junit.jupiter.api.Test;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.GraphNeighbourUtil;
+import org.vspsolver.util.TestGraphs;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalSearchStateTest {
+
+    @Test
+    public void rollbackRestoresTheCheckpoint() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            GraphNeighbourData data = TestGraphs.randomInstance(40, 100, random);
+            Graph graph = GraphNeighbourUtil.toGraph(data);
+            LocalSearchState state = new LocalSearchState(graph, TestGraphs.maxShoreSize(data), data, false);
+            state.loadFrom(startingPart(data.size()));
+
+            for (int round = 0; round < 20; round++) {
+                byte[] saved = state.part.clone();
+                state.checkpoint();
+                randomMoves(state, 1 + random.nextInt(10), random);
+                assertConsistent(state);
+                state.rollback();
+                assertArrayEquals(saved, state.part);
+                assertConsistent(state);
+                // keep some of the rounds so that later checkpoints start from different states
+                if (random.nextBoolean()) {
+                    randomMoves(state, 3, random);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void replayFollowsTheChosenCandidate() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            GraphNeighbourData data = TestGraphs.randomInstance(40, 100, random);
+            Graph graph = GraphNeighbourUtil.toGraph(data);
+            LocalSearchState[] candidates = new LocalSearchState[3];
+            for (int b = 0; b < candidates.length; b++) {
+                candidates[b] = new LocalSearchState(graph, TestGraphs.maxShoreSize(data), data, false);
+                candidates[b].loadFrom(startingPart(data.size()));
+            }
+
+            // one batch round: all candidates move away from the same state, the others follow the winner
+            for (int round = 0; round < 20; round++) {
+                for (LocalSearchState candidate : candidates) {
+                    candidate.checkpoint();
+                    randomMoves(candidate, 1 + random.nextInt(10), random);
+                }
+                LocalSearchState chosen = candidates[random.nextInt(candidates.length)];
+                for (LocalSearchState candidate : candidates) {
+                    if (candidate != chosen) {
+                        candidate.rollback();
+                        candidate.replayFrom(chosen);
+                        assertArrayEquals(chosen.part, candidate.part);
+                        assertConsistent(candidate);
+                    }
+                }
+            }
+        }
+    }
+
+    // the moves are random legal moves from C, each followed by the shore repair the searches run
+    static void randomMoves(LocalSearchState state, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            int v = state.parts.pickRandom((byte) 2, random);
+            if (v < 0) {
+                return;
+            }
+            byte to = (byte) random.nextInt(2);
+            if (state.isLegalMoveFromC(v, to)) {
+                state.applyMoveFromC(v, to, 0, random);
+            }
+            state.forceNonEmptyShores(random);
+        }
+    }
+
+    // every maintained quantity has to equal a fresh load of the same partition
+    static void assertConsistent(LocalSearchState state) {
+        LocalSearchState fresh = new LocalSearchState(state.graph, state.maxShoreSize, state.neighbourData, false);
+        fresh.loadFrom(state.part);
+
+        assertEquals(fresh.sizeA, state.sizeA);
+        assertEquals(fresh.sizeB, state.sizeB);
+        assertEquals(fresh.sizeC, state.sizeC);
+        assertEquals(fresh.costC, state.costC);
+        assertEquals(fresh.countC, state.countC);
+        assertEquals(fresh.hashC, state.hashC);
+        assertEquals(fresh.fingerprintC, state.fingerprintC);
+        assertArrayEquals(fresh.nInA, state.nInA);
+        assertArrayEquals(fresh.nInB, state.nInB);
+        assertArrayEquals(fresh.costInA, state.costInA);
+        assertArrayEquals(fresh.costInB, state.costInB);
+        for (byte p = 0; p < 3; p++) {
+            assertEquals(fresh.parts.size(p), state.parts.size(p));
+            for (int i = 0; i < state.parts.size(p); i++) {
+                assertEquals(p, state.part[state.parts.get(p, i)]);
+            }
+        }
+        assertEquals(fresh.bucketA.size(), state.bucketA.size());
+        assertEquals(fresh.bucketB.size(), state.bucketB.size());
+        for (int v = 0; v < state.n; v++) {
+            boolean inC = state.part[v] == 2;
+            assertEquals(inC, state.bucketA.contains(v));
+            assertEquals(inC, state.bucketB.contains(v));
+            if (inC) {
+                assertEquals(fresh.scoreToA[v], state.scoreToA[v]);
+                assertEquals(fresh.scoreToB[v], state.scoreToB[v]);
+            }
+        }
+    }
+
+    // all of C but one vertex per shore, the moves build the shores up from there
+    static byte[] startingPart(int n) {
+        byte[] part = new byte[n];
+        Arrays.fill(part, (byte) 2);
+        part[0] = 0;
+        part[1] = 1;
+        return part;
+    }
+}
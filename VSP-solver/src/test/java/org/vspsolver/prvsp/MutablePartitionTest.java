@@ -0,0 +1,121 @@
+package org.vspsolver.prvsp;
+
+import org.junit.jupiter.api.Test;
+import org.vspsolver.util.GraphNeighbourData;
+import org.vspsolver.util.TestGraphs;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MutablePartitionTest {
+
+    @Test
+    public void objectivesMatchRecompute() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            GraphNeighbourData data = TestGraphs.randomInstance(30, 70, random);
+            int maxShoreSize = TestGraphs.maxShoreSize(data);
+            MutablePartition state = new MutablePartition(data, maxShoreSize);
+            state.load(PrVspSolutionUtil.randomInitial(data, maxShoreSize, random));
+
+            for (int step = 0; step < 200; step++) {
+                assertTotalsMatch(data, state);
+                int n = data.size();
+                for (int v = 0; v < n; v++) {
+                    if (state.part[v] == 2) {
+                        assertEquals(objectiveAfterFromC(data, state.part, maxShoreSize, v, (byte) 0),
+                                state.objectiveFromC(v, (byte) 0));
+                        assertEquals(objectiveAfterFromC(data, state.part, maxShoreSize, v, (byte) 1),
+                                state.objectiveFromC(v, (byte) 1));
+                    } else {
+                        assertEquals(objectiveAfterToC(data, state.part, v), state.objectiveToC(v));
+                    }
+                }
+
+                int v = random.nextInt(n);
+                if (state.part[v] == 2) {
+                    byte to = (byte) random.nextInt(2);
+                    if (state.objectiveFromC(v, to) != Integer.MAX_VALUE) {
+                        state.moveFromC(v, to);
+                    }
+                } else if (state.objectiveToC(v) != Integer.MAX_VALUE) {
+                    state.moveToC(v);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void relinkingReturnsConsistentSolutions() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            GraphNeighbourData data = TestGraphs.randomInstance(30, 70, random);
+            int maxShoreSize = TestGraphs.maxShoreSize(data);
+            PathRelinking pathRelinking = new PathRelinking(data, maxShoreSize);
+            ExteriorPathRelinking exteriorPathRelinking = new ExteriorPathRelinking(data, maxShoreSize, random, 20, 5);
+
+            for (int pair = 0; pair < 10; pair++) {
+                PrVspSolution first = PrVspSolutionUtil.randomInitial(data, maxShoreSize, random);
+                PrVspSolution second = PrVspSolutionUtil.randomInitial(data, maxShoreSize, random);
+                assertConsistent(data, maxShoreSize, pathRelinking.bestOnPath(first, second));
+                assertConsistent(data, maxShoreSize, exteriorPathRelinking.bestOnExteriorPath(first, first, second));
+            }
+        }
+    }
+
+    private static void assertTotalsMatch(GraphNeighbourData data, MutablePartition state) {
+        int[] totals = totals(data, state.part);
+        assertEquals(totals[0], state.sizeA);
+        assertEquals(totals[1], state.sizeB);
+        assertEquals(totals[2], state.sizeC);
+        assertEquals(totals[3], state.costC);
+    }
+
+    private static void assertConsistent(GraphNeighbourData data, int maxShoreSize, PrVspSolution solution) {
+        int[] totals = totals(data, solution.part);
+        assertEquals(totals[0], solution.sizeA);
+        assertEquals(totals[1], solution.sizeB);
+        assertEquals(totals[2], solution.sizeC);
+        assertEquals(totals[3], solution.costC);
+        assertTrue(solution.sizeA <= maxShoreSize && solution.sizeB <= maxShoreSize);
+    }
+
+    // the move applied to a copy, then the objective summed from scratch
+    private static int objectiveAfterFromC(GraphNeighbourData data, byte[] part, int maxShoreSize, int v,
+                                           byte toShore) {
+        int[] before = totals(data, part);
+        if (before[toShore] + data.weights[v] > maxShoreSize) {
+            return Integer.MAX_VALUE;
+        }
+        byte[] next = part.clone();
+        next[v] = toShore;
+        for (int p = data.offsets[v]; p < data.offsets[v + 1]; p++) {
+            int u = data.targets[p];
+            if (next[u] == 1 - toShore) {
+                next[u] = 2;
+            }
+        }
+        int[] after = totals(data, next);
+        return (after[0] <= 0 || after[1] <= 0) ? Integer.MAX_VALUE : after[3];
+    }
+
+    private static int objectiveAfterToC(GraphNeighbourData data, byte[] part, int v) {
+        byte[] next = part.clone();
+        next[v] = 2;
+        int[] after = totals(data, next);
+        return (after[0] <= 0 || after[1] <= 0) ? Integer.MAX_VALUE : after[3];
+    }
+
+    // weights of A, B and C, then the cost of C
+    private static int[] totals(GraphNeighbourData data, byte[] part) {
+        int[] totals = new int[4];
+        for (int v = 0; v < part.length; v++) {
+            totals[part[v]] += data.weights[v];
+            if (part[v] == 2) {
+                totals[3] += data.costs[v];
+            }
+        }
+        return totals;
+    }
+}
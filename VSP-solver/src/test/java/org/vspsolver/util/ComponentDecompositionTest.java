@@ -0,0 +1,131 @@
+package org.vspsolver.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComponentDecompositionTest {
+
+    @Test
+    public void findsWeightedPaths() {
+        // paths 0-1-2 and 3-4, the isolated vertex 5
+        int[] offsets = {0, 1, 3, 4, 5, 6, 6};
+        int[] targets = {1, 0, 2, 1, 4, 3};
+        int[] weights = {1, 2, 3, 4, 5, 6};
+        ComponentDecomposition components = ComponentDecomposition.of(
+                GraphNeighbourUtil.fromCsr(new int[]{0, 1, 2, 3, 4, 5}, offsets, targets, weights, null));
+
+        assertEquals(3, components.numComponents);
+        assertArrayEquals(new int[]{3, 2, 1}, components.componentSizes);
+        assertArrayEquals(new int[]{6, 9, 6}, components.componentWeights);
+        assertEquals(1, components.largestComponent());
+        assertArrayEquals(new int[]{3, 4}, components.verticesOf(1));
+    }
+
+    @Test
+    public void packingMatchesExhaustiveSearch() {
+        Random random = new Random(3);
+        for (int trial = 0; trial < 2000; trial++) {
+            ComponentDecomposition components = randomComponents(1 + random.nextInt(9), random);
+            int total = 0;
+            for (int w : components.componentWeights) {
+                total += w;
+            }
+
+            int maxShoreSize = 1 + random.nextInt(total + 1);
+            check(components, components.packIntoShores(maxShoreSize), -1, maxShoreSize, maxShoreSize, true);
+
+            int excluded = random.nextInt(components.numComponents);
+            int maxLoadA = random.nextInt(total + 1);
+            int maxLoadB = random.nextInt(total + 1);
+            check(components, components.packAround(excluded, maxLoadA, maxLoadB), excluded, maxLoadA, maxLoadB,
+                    false);
+        }
+    }
+
+    // the packing must be feasible exactly when some assignment is, and put shore 0 as close to the middle of
+    // its feasible load range as the best assignment does
+    private static void check(ComponentDecomposition components, byte[] shoreOf, int excluded,
+                              int maxLoadA, int maxLoadB, boolean nonEmptyShores) {
+        int k = components.numComponents;
+        int rest = 0;
+        for (int c = 0; c < k; c++) {
+            if (c != excluded) {
+                rest += components.componentWeights[c];
+            }
+        }
+        int lo = nonEmptyShores ? Math.max(1, rest - maxLoadB) : Math.max(0, rest - maxLoadB);
+        int hi = nonEmptyShores ? Math.min(maxLoadA, rest - 1) : Math.min(maxLoadA, rest);
+        long twiceMiddle = (long) lo + hi;
+
+        long bestDistance = Long.MAX_VALUE;
+        for (int mask = 0; mask < (1 << k); mask++) {
+            if (excluded >= 0 && (mask & (1 << excluded)) != 0) {
+                continue;
+            }
+            int loadA = 0;
+            for (int c = 0; c < k; c++) {
+                if ((mask & (1 << c)) != 0) {
+                    loadA += components.componentWeights[c];
+                }
+            }
+            if (isFeasible(loadA, rest - loadA, maxLoadA, maxLoadB, nonEmptyShores)) {
+                bestDistance = Math.min(bestDistance, Math.abs(2L * loadA - twiceMiddle));
+            }
+        }
+
+        if (bestDistance == Long.MAX_VALUE) {
+            assertNull(shoreOf);
+            return;
+        }
+        assertNotNull(shoreOf);
+        int loadA = 0, loadB = 0;
+        for (int c = 0; c < k; c++) {
+            if (c == excluded) {
+                assertEquals(2, shoreOf[c]);
+            } else if (shoreOf[c] == 0) {
+                loadA += components.componentWeights[c];
+            } else {
+                assertEquals(1, shoreOf[c]);
+                loadB += components.componentWeights[c];
+            }
+        }
+        assertTrue(isFeasible(loadA, loadB, maxLoadA, maxLoadB, nonEmptyShores));
+        assertEquals(bestDistance, Math.abs(2L * loadA - twiceMiddle));
+    }
+
+    private static boolean isFeasible(int loadA, int loadB, int maxLoadA, int maxLoadB, boolean nonEmptyShores) {
+        return loadA <= maxLoadA && loadB <= maxLoadB && (!nonEmptyShores || (loadA > 0 && loadB > 0));
+    }
+
+    // k disjoint paths of one to three vertices, each vertex weighing 1 to 4
+    private static ComponentDecomposition randomComponents(int k, Random random) {
+        int[] lengths = new int[k];
+        int n = 0;
+        for (int c = 0; c < k; c++) {
+            lengths[c] = 1 + random.nextInt(3);
+            n += lengths[c];
+        }
+        int[] ids = new int[n];
+        int[] weights = new int[n];
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[2 * (n - k)];
+        int v = 0, p = 0;
+        for (int c = 0; c < k; c++) {
+            for (int i = 0; i < lengths[c]; i++, v++) {
+                ids[v] = v;
+                weights[v] = 1 + random.nextInt(4);
+                if (i > 0) {
+                    targets[p++] = v - 1;
+                }
+                if (i + 1 < lengths[c]) {
+                    targets[p++] = v + 1;
+                }
+                offsets[v + 1] = p;
+            }
+        }
+        return ComponentDecomposition.of(GraphNeighbourUtil.fromCsr(ids, offsets, targets, weights, null));
+    }
+}
@@ -0,0 +1,166 @@
+package org.vspsolver.util;
+
+import org.graph4j.Graph;
+import org.graph4j.vsp.VertexSeparator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphReductionTest {
+
+    @Test
+    public void liftsPeeledLeavesBack() {
+        // path 0..5 with leaves 6 on 1 and 7 on 4, a triangle 2-8-9 hanging off 2
+        int[][] edges = {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {1, 6}, {4, 7}, {2, 8}, {2, 9}, {8, 9}};
+        GraphNeighbourData data = build(10, edges, null);
+        GraphReduction reduction = GraphReduction.reduce(data, 8, true);
+
+        assertTrue(reduction.numRemoved() > 0);
+        checkEveryLift(data, reduction, 8);
+    }
+
+    @Test
+    public void splitsTwinClassHeavierThanTheCap() {
+        // clique 0..7 whose vertices are all adjacent to 8, then the path 8-9-10-11
+        List<int[]> edges = new ArrayList<>();
+        for (int u = 0; u < 8; u++) {
+            for (int v = u + 1; v < 9; v++) {
+                edges.add(new int[]{u, v});
+            }
+        }
+        edges.add(new int[]{8, 9});
+        edges.add(new int[]{9, 10});
+        edges.add(new int[]{10, 11});
+        GraphNeighbourData data = build(12, edges.toArray(new int[0][]), null);
+        GraphReduction reduction = GraphReduction.reduce(data, 6, true);
+
+        assertEquals(0, reduction.numRemoved());
+        assertTrue(reduction.reduced.size() < data.size());
+        checkEveryLift(data, reduction, 6);
+    }
+
+    @Test
+    public void liftsWeightedTwinsAndLeaves() {
+        // twins 0,1,2 of weight 4 on top of 3, the path 3-4-5-6 and leaves 7 on 5, 8 on 6
+        int[][] edges = {{0, 1}, {0, 2}, {1, 2}, {0, 3}, {1, 3}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {5, 7}, {6, 8}};
+        int[] weights = {4, 4, 4, 2, 2, 2, 2, 1, 1};
+        GraphNeighbourData data = build(9, edges, weights);
+        GraphReduction reduction = GraphReduction.reduce(data, 12, true);
+
+        assertTrue(reduction.reducedMaxShoreSize < 12);
+        checkEveryLift(data, reduction, 12);
+    }
+
+    @Test
+    public void leavesTheInstanceAloneWhenDisabled() {
+        int[][] edges = {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {1, 6}, {4, 7}};
+        GraphNeighbourData data = build(8, edges, null);
+        GraphReduction reduction = GraphReduction.reduce(data, 6, false);
+
+        assertSame(data, reduction.reduced);
+        assertEquals(0, reduction.numRemoved());
+        assertEquals(6, reduction.reducedMaxShoreSize);
+    }
+
+    // every valid separator of the reduced instance has to lift to a valid one of the original
+    private static void checkEveryLift(GraphNeighbourData data, GraphReduction reduction, int maxShoreSize) {
+        Graph graph = GraphNeighbourUtil.toGraph(data);
+        GraphNeighbourData reduced = reduction.reduced;
+        int cap = reduction.reducedMaxShoreSize;
+        for (int v = 0; v < reduced.size(); v++) {
+            assertTrue(reduced.weights[v] <= cap, "reduced vertex heavier than a shore");
+        }
+
+        int n = reduced.size();
+        byte[] part = new byte[n];
+        int total = (int) Math.pow(3, n);
+        int checked = 0;
+        for (int code = 0; code < total; code++) {
+            for (int v = 0, c = code; v < n; v++, c /= 3) {
+                part[v] = (byte) (c % 3);
+            }
+            if (!isValid(reduced, part, cap)) {
+                continue;
+            }
+            VertexSeparator sep = new VertexSeparator(graph, maxShoreSize);
+            for (int v = 0; v < n; v++) {
+                int id = reduced.ids[v];
+                if (part[v] == 0) {
+                    sep.leftShore().add(id);
+                } else if (part[v] == 1) {
+                    sep.rightShore().add(id);
+                } else {
+                    sep.separator().add(id);
+                }
+            }
+
+            VertexSeparator lifted = reduction.lift(graph, sep);
+            byte[] liftedPart = new byte[data.size()];
+            Arrays.fill(liftedPart, (byte) -1);
+            assign(data, lifted.leftShore().vertices(), (byte) 0, liftedPart);
+            assign(data, lifted.rightShore().vertices(), (byte) 1, liftedPart);
+            assign(data, lifted.separator().vertices(), (byte) 2, liftedPart);
+            for (byte p : liftedPart) {
+                assertNotEquals(-1, p, "vertex missing from the lifted separator");
+            }
+            assertTrue(isValid(data, liftedPart, maxShoreSize), "invalid lift of " + sep);
+            checked++;
+        }
+        assertTrue(checked > 0);
+    }
+
+    private static void assign(GraphNeighbourData data, int[] ids, byte p, byte[] part) {
+        for (int id : ids) {
+            int i = data.indexOf(id);
+            assertEquals(-1, part[i], "vertex placed twice");
+            part[i] = p;
+        }
+    }
+
+    private static boolean isValid(GraphNeighbourData data, byte[] part, int maxShoreSize) {
+        int sizeA = 0, sizeB = 0;
+        for (int v = 0; v < data.size(); v++) {
+            if (part[v] == 0) {
+                sizeA += data.weights[v];
+            } else if (part[v] == 1) {
+                sizeB += data.weights[v];
+            } else {
+                continue;
+            }
+            for (int p = data.offsets[v]; p < data.offsets[v + 1]; p++) {
+                byte pu = part[data.targets[p]];
+                if (pu != 2 && pu != part[v]) {
+                    return false;
+                }
+            }
+        }
+        return sizeA > 0 && sizeB > 0 && sizeA <= maxShoreSize && sizeB <= maxShoreSize;
+    }
+
+    private static GraphNeighbourData build(int n, int[][] edges, int[] weights) {
+        int[] offsets = new int[n + 1];
+        for (int[] e : edges) {
+            offsets[e[0] + 1]++;
+            offsets[e[1] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[offsets[n]];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        for (int[] e : edges) {
+            targets[cursor[e[0]]++] = e[1];
+            targets[cursor[e[1]]++] = e[0];
+        }
+        int[] ids = new int[n];
+        for (int v = 0; v < n; v++) {
+            ids[v] = v;
+            Arrays.sort(targets, offsets[v], offsets[v + 1]);
+        }
+        return GraphNeighbourUtil.fromCsr(ids, offsets, targets, weights, null);
+    }
+}
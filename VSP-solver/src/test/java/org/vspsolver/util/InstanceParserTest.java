@@ -0,0 +1,59 @@
+package org.vspsolver.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceParserTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void keepsTheUnitOfUniformCosts() throws IOException {
+        assertUniform(write("half.gz", "0.5", "0.5", "0.5"), 0.5);
+        assertUniform(write("two.gz", "2", "2", "2"), 2.0);
+        assertUniform(write("zero.gz", "0", "0", "0"), 0.0);
+    }
+
+    @Test
+    public void dividesMixedCostsByTheirGcd() throws IOException {
+        ParsedInstance instance = InstanceParser.loadInstanceFromGZ(write("mixed.gz", "0.5", "1.5", "2"));
+
+        assertArrayEquals(new int[]{1, 3, 4}, instance.costs);
+        assertEquals(0.5, instance.costUnit, 1e-12);
+    }
+
+    private static void assertUniform(String path, double unit) throws IOException {
+        ParsedInstance instance = InstanceParser.loadInstanceFromGZ(path);
+
+        assertNull(instance.costs);
+        assertEquals(unit, instance.costUnit, 1e-12);
+    }
+
+    // a path on three vertices with the given costs
+    private String write(String name, String... costs) throws IOException {
+        Path path = dir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path));
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII))) {
+            writer.println("2 " + costs.length + " " + (costs.length - 1));
+            for (int i = 0; i < costs.length; i++) {
+                writer.println("v " + i + " " + costs[i]);
+            }
+            for (int i = 1; i < costs.length; i++) {
+                writer.println("e " + (i - 1) + " " + i + " 1");
+            }
+        }
+        return path.toString();
+    }
+}
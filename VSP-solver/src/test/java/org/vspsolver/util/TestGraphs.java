@@ -0,0 +1,45 @@
+package org.vspsolver.util;
+
+import java.util.Random;
+
+public final class TestGraphs {
+    private TestGraphs() {}
+
+    // weights 1..3 and costs 1..9, so neither collapses to the unit case
+    public static GraphNeighbourData randomInstance(int n, int m, Random random) {
+        boolean[][] adjacent = new boolean[n][n];
+        int[] degree = new int[n];
+        for (int e = 0; e < m; e++) {
+            int u = random.nextInt(n);
+            int v = random.nextInt(n);
+            if (u != v && !adjacent[u][v]) {
+                adjacent[u][v] = adjacent[v][u] = true;
+                degree[u]++;
+                degree[v]++;
+            }
+        }
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + degree[v];
+        }
+        int[] targets = new int[offsets[n]];
+        int[] ids = new int[n];
+        int[] weights = new int[n];
+        int[] costs = new int[n];
+        for (int v = 0, p = 0; v < n; v++) {
+            for (int u = 0; u < n; u++) {
+                if (adjacent[v][u]) {
+                    targets[p++] = u;
+                }
+            }
+            ids[v] = v;
+            weights[v] = 1 + random.nextInt(3);
+            costs[v] = 1 + random.nextInt(9);
+        }
+        return GraphNeighbourUtil.fromCsr(ids, offsets, targets, weights, costs);
+    }
+
+    public static int maxShoreSize(GraphNeighbourData data) {
+        return (int) Math.ceil(0.55 * data.totalWeight());
+    }
+}